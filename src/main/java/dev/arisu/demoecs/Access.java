@@ -0,0 +1,30 @@
+package dev.arisu.demoecs;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares what a system touches, for {@link SystemScheduler} to decide which systems may run
+ * at the same time. Entries are component, resource or any other shared class, such as
+ * {@link dev.arisu.demoecs.terrain.Terrain} or {@link InputState}.
+ * <p>
+ * Systems adding or removing entities or components must declare a write of
+ * {@link com.badlogic.ashley.core.Engine}. Systems without the annotation are assumed to touch
+ * everything and to need the main thread.
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Access {
+    Class<?>[] reads() default {};
+
+    Class<?>[] writes() default {};
+
+    /// NOTE: system must run on the thread updating the engine, e.g. it calls OpenGL
+    boolean mainThread() default false;
+}
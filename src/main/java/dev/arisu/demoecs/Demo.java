@@ -1,19 +1,15 @@
 package dev.arisu.demoecs;
 
-import com.badlogic.ashley.core.Engine;
-import com.badlogic.ashley.core.Entity;
-import dev.arisu.demoecs.components.BoundingBox;
-import dev.arisu.demoecs.components.PlayerTag;
-import dev.arisu.demoecs.components.Position;
-import dev.arisu.demoecs.components.Rotation;
-import dev.arisu.demoecs.components.Scale;
+import dev.arisu.demoecs.resources.RenderStatsResource;
+import dev.arisu.demoecs.resources.TimeResource;
 import dev.arisu.demoecs.resources.ViewMatrixResource;
 import dev.arisu.demoecs.systems.EntityRenderSystem;
 import dev.arisu.demoecs.systems.InputSystem;
-import dev.arisu.demoecs.systems.MoveSystem;
+import dev.arisu.demoecs.systems.ProfilerSystem;
 import dev.arisu.demoecs.systems.TerrainRenderSystem;
 import dev.arisu.demoecs.systems.ViewMatrixUpdateSystem;
 import dev.arisu.demoecs.terrain.Terrain;
+import dev.arisu.demoecs.terrain.mesh.MeshingMode;
 import java.nio.IntBuffer;
 import java.util.concurrent.ArrayBlockingQueue;
 import org.lwjgl.Version;
@@ -38,6 +34,7 @@ import static org.lwjgl.glfw.GLFW.glfwCreateWindow;
 import static org.lwjgl.glfw.GLFW.glfwDefaultWindowHints;
 import static org.lwjgl.glfw.GLFW.glfwDestroyWindow;
 import static org.lwjgl.glfw.GLFW.glfwGetPrimaryMonitor;
+import static org.lwjgl.glfw.GLFW.glfwGetTime;
 import static org.lwjgl.glfw.GLFW.glfwGetVideoMode;
 import static org.lwjgl.glfw.GLFW.glfwGetWindowSize;
 import static org.lwjgl.glfw.GLFW.glfwInit;
@@ -70,12 +67,28 @@ import org.lwjgl.system.MemoryStack;
 import static org.lwjgl.system.MemoryStack.stackPush;
 import static org.lwjgl.system.MemoryUtil.NULL;
 
+/**
+ * Windowed demo.
+ * <pre>
+ * Demo [--profile SECONDS [--json]]
+ * </pre>
+ * {@code --profile} enables the {@link Profiler} and dumps it to stdout at the given interval.
+ */
 public class Demo {
 
     // The window handle
     private long window;
     private InputState inputState;
-    private Engine engine;
+    private GameLoop gameLoop;
+    private double lastFrameTime;
+
+    private final double profileSeconds;
+    private final Profiler.Format profileFormat;
+
+    public Demo(double profileSeconds, Profiler.Format profileFormat) {
+        this.profileSeconds = profileSeconds;
+        this.profileFormat = profileFormat;
+    }
 
     private void run() {
         System.out.println("Hello LWJGL " + Version.getVersion() + "!");
@@ -135,9 +148,10 @@ public class Demo {
         glEnable(GL_DEPTH_TEST);
         glEnable(GL_CULL_FACE);
 
-        engine = new Engine();
+        Simulation simulation = new Simulation(new Terrain());
 
-        inputState = new InputState();
+        gameLoop = simulation.getGameLoop();
+        inputState = simulation.getInputState();
 
         glfwSetCursorPos(window, 0, 0);
 
@@ -169,8 +183,7 @@ public class Demo {
         });
         glViewport(0, 0, 800, 600);
 
-        ArrayBlockingQueue<InputSystem.MouseMove> mouseMoves =
-                new ArrayBlockingQueue<>(9999);
+        ArrayBlockingQueue<InputSystem.MouseMove> mouseMoves = simulation.getMouseMoves();
 
         glfwSetInputMode(window, GLFW_CURSOR, GLFW_CURSOR_DISABLED);
 
@@ -180,33 +193,24 @@ public class Demo {
         });
 
         ViewMatrixResource viewMatrixResource = new ViewMatrixResource();
+        RenderStatsResource renderStatsResource = new RenderStatsResource();
+        TimeResource timeResource = simulation.getTimeResource();
 
-        Terrain terrain = new Terrain();
-
-        engine.addSystem(new InputSystem(inputState, mouseMoves));
-        engine.addSystem(new MoveSystem(terrain));
-        engine.addSystem(new ViewMatrixUpdateSystem(viewMatrixResource));
-        engine.addSystem(new TerrainRenderSystem(terrain, viewMatrixResource));
-        engine.addSystem(new EntityRenderSystem(viewMatrixResource));
+        Terrain terrain = simulation.getTerrain();
 
-        for (int eIndex = 0; eIndex < 10; ++eIndex) {
-            Entity entity = new Entity();
-            entity.add(new Position(5 * eIndex, 0.0f, 30.0f));
-            entity.add(new Rotation());
-            entity.add(new Scale(0.6f, 0.6f, 1.75f));
-            entity.add(new BoundingBox(0.6f, 0.6f, 1.75f));
+        gameLoop.addRenderSystem(new ViewMatrixUpdateSystem(viewMatrixResource, timeResource));
+        gameLoop.addRenderSystem(new TerrainRenderSystem(terrain, viewMatrixResource, renderStatsResource, MeshingMode.GREEDY, 24,
+                TerrainRenderSystem.DEFAULT_LOD_DISTANCE));
+        gameLoop.addRenderSystem(new EntityRenderSystem(viewMatrixResource, renderStatsResource, timeResource,
+                simulation.getBodiesResource()));
+        gameLoop.addRenderSystem(new ProfilerSystem(simulation.getProfiler(), renderStatsResource));
 
-            engine.addEntity(entity);
+        if (profileSeconds > 0.0) {
+            simulation.getProfiler().dumpEvery((long) (profileSeconds * 1e9), profileFormat, System.out::println);
+            simulation.getProfiler().setEnabled(true);
         }
 
-        Entity player = new Entity();
-        player.add(new Position(0.5f, 0.5f, 2.0f));
-        player.add(new Rotation());
-        player.add(new Scale());
-        player.add(new PlayerTag());
-        player.add(new BoundingBox(0.6f, 0.6f, 1.75f));
-
-        engine.addEntity(player);
+        lastFrameTime = glfwGetTime();
 
         while (!glfwWindowShouldClose(window)) {
 
@@ -218,10 +222,29 @@ public class Demo {
     }
 
     private void runGameStep() {
-        engine.update(0.1f);
+        final double now = glfwGetTime();
+        gameLoop.frame(now - lastFrameTime);
+        lastFrameTime = now;
     }
 
     public static void main(String[] args) {
-        new Demo().run();
+        double profileSeconds = 0.0;
+        Profiler.Format profileFormat = Profiler.Format.TEXT;
+
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--profile":
+                    profileSeconds = Double.parseDouble(args[++i]);
+                    break;
+                case "--json":
+                    profileFormat = Profiler.Format.JSON;
+                    break;
+                default:
+                    System.err.println("Usage: Demo [--profile SECONDS [--json]]");
+                    System.exit(1);
+            }
+        }
+
+        new Demo(profileSeconds, profileFormat).run();
     }
 }
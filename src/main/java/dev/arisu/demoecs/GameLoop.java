@@ -0,0 +1,184 @@
+package dev.arisu.demoecs;
+
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.EntitySystem;
+import dev.arisu.demoecs.resources.TimeResource;
+import dev.arisu.demoecs.util.Histogram;
+import lombok.Getter;
+
+/**
+ * Fixed-timestep driver of an {@link Engine}.
+ * <p>
+ * Logic systems run at a fixed tick rate, however long the frames are: frame time is accumulated
+ * and spent in whole ticks of {@link #getTickSeconds()}. Render systems run once per frame
+ * afterwards, the remainder of the accumulator is published as {@link TimeResource#getAlpha()}.
+ * <p>
+ * Both groups live in the same engine but are never updated by it: the loop switches their
+ * processing off and adds a system of its own that runs one group or the other through a
+ * {@link SystemScheduler}. Entity and component changes made by systems are applied once the
+ * whole group is done.
+ */
+public class GameLoop {
+    private final Engine engine;
+    private final TimeResource timeResource;
+
+    @Getter
+    private final SystemScheduler logicSystems;
+    @Getter
+    private final SystemScheduler renderSystems;
+    private final Stage stage = new Stage();
+
+    @Getter
+    private final double tickSeconds;
+
+    /// NOTE: `deltaTime` passed to logic systems on every tick, physics constants are tuned to it
+    @Getter
+    private final float tickDelta;
+
+    /// NOTE: ticks run in a single frame at most, the rest of a long frame is dropped,
+    /// so a slow frame can't make the next one even slower
+    @Getter
+    private final int maxTicksPerFrame;
+
+    /// NOTE: `null` when not profiling
+    @Getter
+    private Profiler profiler;
+    private Histogram frameTimes;
+    private Histogram tickTimes;
+
+    private double accumulator;
+
+    @Getter
+    private long droppedTicks;
+
+    public GameLoop(Engine engine, TimeResource timeResource,
+                    int ticksPerSecond, float tickDelta, int maxTicksPerFrame) {
+        this(engine, timeResource, ticksPerSecond, tickDelta, maxTicksPerFrame, 1);
+    }
+
+    /**
+     * @param threads most threads running systems of a group, see {@link SystemScheduler#getThreads()}.
+     */
+    public GameLoop(Engine engine, TimeResource timeResource,
+                    int ticksPerSecond, float tickDelta, int maxTicksPerFrame, int threads) {
+        if (ticksPerSecond <= 0 || maxTicksPerFrame <= 0) {
+            throw new IllegalArgumentException("tick rate and catch-up cap must be positive");
+        }
+        this.engine = engine;
+        this.timeResource = timeResource;
+        this.tickSeconds = 1.0 / ticksPerSecond;
+        this.tickDelta = tickDelta;
+        this.maxTicksPerFrame = maxTicksPerFrame;
+        this.logicSystems = new SystemScheduler(threads);
+        this.renderSystems = new SystemScheduler(threads);
+
+        engine.addSystem(stage);
+    }
+
+    public void addLogicSystem(EntitySystem system) {
+        add(logicSystems, system);
+    }
+
+    public void addRenderSystem(EntitySystem system) {
+        add(renderSystems, system);
+    }
+
+    /**
+     * Records frame, tick and system times into the profiler while it's enabled.
+     */
+    public void setProfiler(Profiler profiler) {
+        this.profiler = profiler;
+        this.frameTimes = profiler != null ? profiler.time(Profiler.FRAME) : null;
+        this.tickTimes = profiler != null ? profiler.time(Profiler.TICK) : null;
+        logicSystems.setProfiler(profiler);
+        renderSystems.setProfiler(profiler);
+    }
+
+    public void shutdown() {
+        logicSystems.shutdown();
+        renderSystems.shutdown();
+    }
+
+    private void add(SystemScheduler scheduler, EntitySystem system) {
+        engine.addSystem(system);
+        system.setProcessing(false);
+        scheduler.add(system);
+    }
+
+    /**
+     * Runs as many ticks as fit into the accumulated time, then renders a single frame.
+     *
+     * @param frameSeconds wall-clock time since the previous frame.
+     * @return number of ticks run.
+     */
+    public int frame(double frameSeconds) {
+        final int ticks = runTicks(frameSeconds);
+        render((float) frameSeconds);
+
+        if (profiler != null && profiler.isEnabled()) {
+            frameTimes.record((long) (frameSeconds * 1e9));
+            profiler.poll();
+        }
+        return ticks;
+    }
+
+    /**
+     * Runs logic systems only, as many ticks as fit into the accumulated time.
+     *
+     * @return number of ticks run.
+     */
+    public int tick(double frameSeconds) {
+        final int ticks = runTicks(frameSeconds);
+        if (profiler != null) {
+            profiler.poll();
+        }
+        return ticks;
+    }
+
+    private int runTicks(double frameSeconds) {
+        accumulator += frameSeconds;
+
+        int ticks = 0;
+        if (accumulator >= tickSeconds) {
+            stage.systems = logicSystems;
+
+            while (accumulator >= tickSeconds && ticks < maxTicksPerFrame) {
+                final boolean profiling = profiler != null && profiler.isEnabled();
+                final long start = profiling ? System.nanoTime() : 0;
+                engine.update(tickDelta);
+                if (profiling) {
+                    tickTimes.record(System.nanoTime() - start);
+                }
+                timeResource.setTicks(timeResource.getTicks() + 1);
+                accumulator -= tickSeconds;
+                ticks++;
+            }
+
+            if (accumulator >= tickSeconds) {
+                final long dropped = (long) (accumulator / tickSeconds);
+                droppedTicks += dropped;
+                accumulator -= dropped * tickSeconds;
+            }
+        }
+
+        timeResource.setAlpha((float) (accumulator / tickSeconds));
+        return ticks;
+    }
+
+    private void render(float frameSeconds) {
+        stage.systems = renderSystems;
+        engine.update(frameSeconds);
+    }
+
+    /**
+     * The only system of the engine that is processing, runs the current group.
+     */
+    private static final class Stage extends EntitySystem {
+        private SystemScheduler systems;
+
+        @Override
+        public void update(float deltaTime) {
+            systems.update(deltaTime);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package dev.arisu.demoecs;
+
+import dev.arisu.demoecs.components.Position;
+import dev.arisu.demoecs.terrain.Terrain;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the {@link Simulation} without a window, for load-testing physics and world logic.
+ * <pre>
+ * Headless [--ticks N] [--rate HZ] [--script FILE] [--bodies N] [--seed N] [--world DIR]
+ *          [--profile SECONDS [--json]]
+ * </pre>
+ * {@code --rate 0} (the default) ticks as fast as possible, otherwise ticks are paced to
+ * the wall clock. Input comes from a recording (see {@link InputScript#load}) or
+ * {@link InputScript#wander()}. {@code --bodies} adds falling bodies scattered over the terrain,
+ * see {@link Simulation#spawnBody}. {@code --seed} picks the terrain, random by default;
+ * {@code --world} saves it to the directory, or continues the world saved there, see
+ * {@link Terrain#open}. Throughput is reported every second and at the end, along with time spent
+ * in every system. {@code --profile} enables the {@link Profiler} and dumps
+ * it at the given interval.
+ */
+public class Headless {
+
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    public static void main(String[] args) throws IOException {
+        long ticks = 10_000;
+        int rate = 0;
+        InputScript script = InputScript.wander();
+        int bodies = 0;
+        long seed = new Random().nextLong();
+        Path world = null;
+        double profileSeconds = 0.0;
+        Profiler.Format profileFormat = Profiler.Format.TEXT;
+
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--ticks":
+                    ticks = Long.parseLong(args[++i]);
+                    break;
+                case "--rate":
+                    rate = Integer.parseInt(args[++i]);
+                    break;
+                case "--script":
+                    script = InputScript.load(Paths.get(args[++i]));
+                    break;
+                case "--bodies":
+                    bodies = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--world":
+                    world = Paths.get(args[++i]);
+                    break;
+                case "--profile":
+                    profileSeconds = Double.parseDouble(args[++i]);
+                    break;
+                case "--json":
+                    profileFormat = Profiler.Format.JSON;
+                    break;
+                default:
+                    System.err.println("Usage: Headless [--ticks N] [--rate HZ] [--script FILE] [--bodies N]"
+                            + " [--seed N] [--world DIR] [--profile SECONDS [--json]]");
+                    System.exit(1);
+            }
+        }
+
+        final Terrain terrain = world != null ? Terrain.open(world, seed) : new Terrain(seed);
+        final Simulation simulation = new Simulation(terrain);
+        if (profileSeconds > 0.0) {
+            simulation.getProfiler().dumpEvery((long) (profileSeconds * 1e9), profileFormat, System.out::println);
+            simulation.getProfiler().setEnabled(true);
+        }
+
+        final Random rand = new Random(42);
+        for (int i = 0; i < bodies; ++i) {
+            simulation.spawnBody(rand.nextFloat() * 250.0f - 125.0f, rand.nextFloat() * 250.0f - 125.0f,
+                    1.0f + rand.nextFloat() * 30.0f);
+        }
+
+        run(simulation, script, ticks, rate);
+        terrain.close();
+    }
+
+    public static void run(Simulation simulation, InputScript script, long ticks, int rate) {
+        final long tickNanos = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+
+        final long start = System.nanoTime();
+        long reportStart = start;
+        long reportTicks = 0;
+
+        for (long tick = 0; tick < ticks; ++tick) {
+            script.apply(tick, simulation.getInputState(), simulation.getMouseMoves());
+            simulation.tick();
+            reportTicks++;
+
+            final long now = System.nanoTime();
+
+            if (now - reportStart >= REPORT_INTERVAL_NANOS) {
+                report("tick " + (tick + 1), reportTicks, now - reportStart, simulation);
+                reportStart = now;
+                reportTicks = 0;
+            }
+
+            if (tickNanos > 0) {
+                final long wait = start + (tick + 1) * tickNanos - now;
+                if (wait > 0) {
+                    sleep(wait);
+                }
+            }
+        }
+
+        report("total", ticks, System.nanoTime() - start, simulation);
+        reportSystems(simulation.getGameLoop().getLogicSystems());
+    }
+
+    private static void report(String label, long ticks, long nanos, Simulation simulation) {
+        final Position position = simulation.getPlayer().getComponent(Position.class);
+        System.out.printf("%s: %.1f ticks/sec (%d ticks in %.3f s), player at %.2f %.2f %.2f%n",
+                label, ticks * 1e9 / nanos, ticks, nanos / 1e9,
+                position.x, position.y, position.z);
+    }
+
+    private static void reportSystems(SystemScheduler systems) {
+        for (SystemScheduler.Timing timing : systems.getTimings()) {
+            System.out.printf("  %-24s %8.3f ms/tick%n",
+                    timing.getSystem().getClass().getSimpleName(),
+                    timing.getRuns() > 0 ? timing.getTotalNanos() / 1e6 / timing.getRuns() : 0.0);
+        }
+        System.out.printf("  %d threads, parallelism %.2f%n", systems.getThreads(), systems.getParallelism());
+    }
+
+    private static void sleep(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
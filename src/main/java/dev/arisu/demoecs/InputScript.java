@@ -0,0 +1,101 @@
+package dev.arisu.demoecs;
+
+import dev.arisu.demoecs.systems.InputSystem;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Source of player input for {@link Headless} runs, applied before every tick.
+ */
+public interface InputScript {
+
+    void apply(long tick, InputState inputState, Queue<InputSystem.MouseMove> mouseMoves);
+
+    /**
+     * Walks forward while slowly turning, and jumps once a second.
+     */
+    static InputScript wander() {
+        return (tick, inputState, mouseMoves) -> {
+            inputState.setW(true);
+            inputState.setSpace(tick % Simulation.TICKS_PER_SECOND == 0);
+            mouseMoves.offer(new InputSystem.MouseMove(2.0, 0.0));
+        };
+    }
+
+    /**
+     * Loads a recording with one line per tick that changes the input:
+     * <pre>
+     * &lt;tick&gt; &lt;keys&gt; [&lt;mouse dx&gt; &lt;mouse dy&gt;]
+     * </pre>
+     * where keys is any combination of {@code wsad} and {@code j} for space, or {@code -} for none.
+     * Keys stay held until the next line, the recording loops once it runs out.
+     * Empty lines and lines starting with {@code #} are skipped.
+     */
+    static InputScript load(Path path) throws IOException {
+        final Map<Long, Event> events = new HashMap<>();
+        long length = 0;
+
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            final String[] parts = line.split("\\s+");
+            if (parts.length != 2 && parts.length != 4) {
+                throw new IOException(path + ":" + lineNumber + ": expected `<tick> <keys> [<dx> <dy>]`");
+            }
+            try {
+                final long tick = Long.parseLong(parts[0]);
+                final InputSystem.MouseMove move = parts.length == 4
+                        ? new InputSystem.MouseMove(Double.parseDouble(parts[2]), Double.parseDouble(parts[3]))
+                        : null;
+
+                events.put(tick, new Event(parts[1], move));
+                length = Math.max(length, tick + 1);
+            } catch (NumberFormatException e) {
+                throw new IOException(path + ":" + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+
+        if (events.isEmpty()) {
+            throw new IOException(path + ": recording is empty");
+        }
+
+        final long loopLength = length;
+
+        return (tick, inputState, mouseMoves) -> {
+            final Event event = events.get(tick % loopLength);
+            if (event == null) {
+                return;
+            }
+
+            inputState.setW(event.keys.indexOf('w') >= 0);
+            inputState.setS(event.keys.indexOf('s') >= 0);
+            inputState.setA(event.keys.indexOf('a') >= 0);
+            inputState.setD(event.keys.indexOf('d') >= 0);
+            inputState.setSpace(event.keys.indexOf('j') >= 0);
+
+            if (event.move != null) {
+                mouseMoves.offer(event.move);
+            }
+        };
+    }
+
+    final class Event {
+        private final String keys;
+        private final InputSystem.MouseMove move;
+
+        private Event(String keys, InputSystem.MouseMove move) {
+            this.keys = keys;
+            this.move = move;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package dev.arisu.demoecs;
+
+import dev.arisu.demoecs.util.Histogram;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Named {@link Histogram}s of where frames go: time of every frame, tick and system, see
+ * {@link GameLoop} and {@link SystemScheduler}, and per-frame counters recorded by
+ * {@link dev.arisu.demoecs.systems.ProfilerSystem}. Allocation rate is sampled between dumps.
+ * <p>
+ * Nothing is recorded while disabled, callers only check {@link #isEnabled()}. Histograms
+ * cover the time since the last {@link #reset()}; periodic dumps reset them.
+ * <p>
+ * Histograms must only be read while no systems are running.
+ */
+public class Profiler {
+    public static final String FRAME = "frame";
+    public static final String TICK = "tick";
+    public static final String SYSTEM_PREFIX = "system.";
+
+    public enum Format {
+        TEXT,
+        JSON
+    }
+
+    @Getter
+    @Setter
+    private boolean enabled;
+
+    /// NOTE: histograms of nanoseconds, as opposed to plain counts
+    private final Map<String, Histogram> times = new LinkedHashMap<>();
+    private final Map<String, Histogram> counts = new LinkedHashMap<>();
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private long windowStart = System.nanoTime();
+    private long windowAllocated = allocatedBytes();
+
+    private long dumpIntervalNanos;
+    private Format dumpFormat;
+    private Consumer<String> dumpSink;
+
+    /**
+     * Histogram of durations in nanoseconds, created empty on first use.
+     */
+    public synchronized Histogram time(String name) {
+        return times.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    /**
+     * Histogram of plain counts, created empty on first use.
+     */
+    public synchronized Histogram count(String name) {
+        return counts.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    public Map<String, Histogram> getTimes() {
+        return Collections.unmodifiableMap(times);
+    }
+
+    public Map<String, Histogram> getCounts() {
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * Bytes allocated per second by all live threads since the last {@link #reset()}, or
+     * {@code -1} if the JVM doesn't measure allocation.
+     */
+    public double getAllocationRate() {
+        final long allocated = allocatedBytes();
+        final long nanos = System.nanoTime() - windowStart;
+        if (allocated < 0 || windowAllocated < 0 || nanos <= 0) {
+            return -1.0;
+        }
+        /// NOTE: bytes of threads that died since are lost, this can only undercount
+        return Math.max(0, allocated - windowAllocated) * 1e9 / nanos;
+    }
+
+    public void reset() {
+        times.values().forEach(Histogram::reset);
+        counts.values().forEach(Histogram::reset);
+        windowStart = System.nanoTime();
+        windowAllocated = allocatedBytes();
+    }
+
+    /**
+     * Makes {@link #poll()} pass a dump to the sink and reset every {@code intervalNanos}.
+     */
+    public void dumpEvery(long intervalNanos, Format format, Consumer<String> sink) {
+        this.dumpIntervalNanos = intervalNanos;
+        this.dumpFormat = format;
+        this.dumpSink = sink;
+        reset();
+    }
+
+    /**
+     * Dumps if enabled and the dump interval passed, called by {@link GameLoop} after every
+     * frame and tick.
+     */
+    public void poll() {
+        if (!enabled || dumpSink == null || System.nanoTime() - windowStart < dumpIntervalNanos) {
+            return;
+        }
+        dumpSink.accept(dump(dumpFormat));
+        reset();
+    }
+
+    public String dump(Format format) {
+        return format == Format.JSON ? toJson() : toText();
+    }
+
+    private String toText() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%-32s %8s %10s %10s %10s %10s %10s%n",
+                "ms", "count", "mean", "p50", "p99", "p99.9", "max"));
+        for (Map.Entry<String, Histogram> entry : times.entrySet()) {
+            final Histogram h = entry.getValue();
+            sb.append(String.format(Locale.ROOT, "%-32s %8d %10.3f %10.3f %10.3f %10.3f %10.3f%n",
+                    entry.getKey(), h.getCount(), h.getMean() / 1e6,
+                    h.getValueAtPercentile(50) / 1e6, h.getValueAtPercentile(99) / 1e6,
+                    h.getValueAtPercentile(99.9) / 1e6, h.getMax() / 1e6));
+        }
+        for (Map.Entry<String, Histogram> entry : counts.entrySet()) {
+            final Histogram h = entry.getValue();
+            sb.append(String.format(Locale.ROOT, "%-32s %8d %10.1f %10d %10d %10d %10d%n",
+                    entry.getKey(), h.getCount(), h.getMean(),
+                    h.getValueAtPercentile(50), h.getValueAtPercentile(99),
+                    h.getValueAtPercentile(99.9), h.getMax()));
+        }
+        sb.append(String.format(Locale.ROOT, "allocation rate: %.1f MB/s%n", getAllocationRate() / 1e6));
+        return sb.toString();
+    }
+
+    private String toJson() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "{\"windowSeconds\":%.3f,\"allocationBytesPerSecond\":%.0f",
+                (System.nanoTime() - windowStart) / 1e9, getAllocationRate()));
+        sb.append(",\"timesNanos\":");
+        appendJson(sb, times);
+        sb.append(",\"counts\":");
+        appendJson(sb, counts);
+        return sb.append('}').toString();
+    }
+
+    private static void appendJson(StringBuilder sb, Map<String, Histogram> histograms) {
+        sb.append('{');
+        boolean first = true;
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            final Histogram h = entry.getValue();
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            /// NOTE: names are class names and constants, nothing to escape
+            sb.append(String.format(Locale.ROOT,
+                    "\"%s\":{\"count\":%d,\"min\":%d,\"mean\":%.1f,\"p50\":%d,\"p99\":%d,\"p999\":%d,\"max\":%d}",
+                    entry.getKey(), h.getCount(), h.getMin(), h.getMean(),
+                    h.getValueAtPercentile(50), h.getValueAtPercentile(99),
+                    h.getValueAtPercentile(99.9), h.getMax()));
+        }
+        sb.append('}');
+    }
+
+    private long allocatedBytes() {
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        final com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+        if (!allocation.isThreadAllocatedMemorySupported() || !allocation.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        long sum = 0;
+        for (long bytes : allocation.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) {
+                sum += bytes;
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,116 @@
+package dev.arisu.demoecs;
+
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import dev.arisu.demoecs.components.BoundingBox;
+import dev.arisu.demoecs.components.Flags;
+import dev.arisu.demoecs.components.PlayerTag;
+import dev.arisu.demoecs.components.Position;
+import dev.arisu.demoecs.components.PreviousPosition;
+import dev.arisu.demoecs.components.Rotation;
+import dev.arisu.demoecs.components.Scale;
+import dev.arisu.demoecs.components.Velocity;
+import dev.arisu.demoecs.resources.BodiesResource;
+import dev.arisu.demoecs.resources.ContactsResource;
+import dev.arisu.demoecs.resources.TimeResource;
+import dev.arisu.demoecs.systems.EntityCollisionSystem;
+import dev.arisu.demoecs.systems.GravitySystem;
+import dev.arisu.demoecs.systems.InputSystem;
+import dev.arisu.demoecs.systems.MoveSystem;
+import dev.arisu.demoecs.systems.PreviousPositionSystem;
+import dev.arisu.demoecs.systems.TerrainStreamingSystem;
+import dev.arisu.demoecs.terrain.Terrain;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import lombok.Getter;
+
+/**
+ * World with its simulation systems, independent of any window or OpenGL context.
+ * <p>
+ * {@link Demo} adds render systems on top through {@link #getGameLoop()},
+ * {@link Headless} ticks it on its own.
+ */
+@Getter
+public class Simulation {
+
+    /// NOTE: physics constants were tuned for `deltaTime == 0.1` once per 60 Hz frame
+    public static final int TICKS_PER_SECOND = 60;
+    public static final float TICK_DELTA = 0.1f;
+    public static final int MAX_TICKS_PER_FRAME = 5;
+    public static final int SAVE_INTERVAL_SECONDS = 30;
+
+    private final Engine engine = new Engine();
+    private final TimeResource timeResource = new TimeResource();
+    private final ContactsResource contactsResource = new ContactsResource();
+    private final BodiesResource bodiesResource = new BodiesResource();
+    private final Profiler profiler = new Profiler();
+    private final InputState inputState = new InputState();
+    private final ArrayBlockingQueue<InputSystem.MouseMove> mouseMoves = new ArrayBlockingQueue<>(9999);
+
+    private final Terrain terrain;
+    private final GameLoop gameLoop;
+    private final Entity player;
+
+    public Simulation(Terrain terrain) {
+        this.terrain = terrain;
+        this.gameLoop = new GameLoop(engine, timeResource, TICKS_PER_SECOND, TICK_DELTA, MAX_TICKS_PER_FRAME,
+                Runtime.getRuntime().availableProcessors());
+        this.gameLoop.setProfiler(profiler);
+
+        engine.addEntityListener(BodiesResource.FAMILY, bodiesResource);
+
+        gameLoop.addLogicSystem(new PreviousPositionSystem(bodiesResource));
+        gameLoop.addLogicSystem(new InputSystem(inputState, mouseMoves));
+        gameLoop.addLogicSystem(new TerrainStreamingSystem(terrain, TerrainStreamingSystem.DEFAULT_RADIUS,
+                SAVE_INTERVAL_SECONDS * TICKS_PER_SECOND));
+        gameLoop.addLogicSystem(new GravitySystem(bodiesResource));
+        /// NOTE: shares the common pool with terrain generation, which never runs at the same time
+        gameLoop.addLogicSystem(new MoveSystem(terrain, bodiesResource, ForkJoinPool.commonPool()));
+        gameLoop.addLogicSystem(new EntityCollisionSystem(contactsResource, bodiesResource));
+
+        for (int eIndex = 0; eIndex < 10; ++eIndex) {
+            Entity entity = new Entity();
+            entity.add(new Position(5 * eIndex, 0.0f, 30.0f));
+            entity.add(new PreviousPosition(5 * eIndex, 0.0f, 30.0f));
+            entity.add(new Rotation());
+            entity.add(new Scale(0.6f, 0.6f, 1.75f));
+            entity.add(new BoundingBox(0.6f, 0.6f, 1.75f));
+            entity.add(new Velocity());
+            entity.add(new Flags());
+
+            engine.addEntity(entity);
+        }
+
+        player = new Entity();
+        player.add(new Position(0.5f, 0.5f, 2.0f));
+        player.add(new PreviousPosition(0.5f, 0.5f, 2.0f));
+        player.add(new Rotation());
+        player.add(new Scale());
+        player.add(new PlayerTag());
+        player.add(new BoundingBox(0.6f, 0.6f, 1.75f));
+        player.add(new Velocity());
+        player.add(new Flags());
+
+        engine.addEntity(player);
+    }
+
+    /**
+     * Adds a body the size of an NPC, kept in {@link BodiesResource} rather than in components.
+     */
+    public Entity spawnBody(float x, float y, float z) {
+        final Entity entity = new Entity();
+        final int slot = bodiesResource.add(entity, x, y, z, 0.6f, 0.6f, 1.75f);
+        bodiesResource.scaleX[slot] = 0.6f;
+        bodiesResource.scaleY[slot] = 0.6f;
+        bodiesResource.scaleZ[slot] = 1.75f;
+        engine.addEntity(entity);
+        return entity;
+    }
+
+    /**
+     * Runs a single tick of the logic systems, regardless of wall-clock time.
+     */
+    public void tick() {
+        gameLoop.tick(gameLoop.getTickSeconds());
+    }
+}
@@ -0,0 +1,347 @@
+package dev.arisu.demoecs;
+
+import com.badlogic.ashley.core.EntitySystem;
+import dev.arisu.demoecs.util.Histogram;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import lombok.Getter;
+
+/**
+ * Runs a group of systems, concurrently where their {@link Access} declarations allow it.
+ * <p>
+ * Two systems conflict when one of them writes something the other reads or writes. Of two
+ * conflicting systems the one added first always runs first, as it would in
+ * {@link com.badlogic.ashley.core.Engine#update(float)}; systems that don't conflict run
+ * at the same time on the thread calling {@link #update(float)} and on worker threads.
+ * Systems declared {@link Access#mainThread()} only run on the calling thread. Worker threads
+ * are only started as far as systems can overlap at all, see {@link #getThreads()}.
+ * <p>
+ * Systems are updated whether or not they are {@link EntitySystem#checkProcessing() processing},
+ * see {@link GameLoop}. Time spent in every system is recorded, see {@link #getTimings()}
+ * and {@link #getParallelism()}, and into the {@link Profiler} if one is set and enabled.
+ */
+public class SystemScheduler {
+    private static final Access UNDECLARED = Undeclared.class.getAnnotation(Access.class);
+
+    private final List<Node> nodes = new ArrayList<>();
+
+    /// NOTE: number of systems at every depth of the dependency graph, none of them conflict
+    private final List<Integer> levelSizes = new ArrayList<>();
+
+    private final int maxThreads;
+
+    private final List<Thread> workers = new ArrayList<>();
+
+    private Profiler profiler;
+
+    /// NOTE: systems ready to run, guarded by `lock` along with everything below
+    private final ArrayDeque<Node> mainReady = new ArrayDeque<>();
+    private final ArrayDeque<Node> anyReady = new ArrayDeque<>();
+    private final Object lock = new Object();
+    private int remaining;
+    private float deltaTime;
+    private Throwable failure;
+    private boolean shutdown;
+
+    /// NOTE: wall-clock time of the last update and of all of them
+    @Getter
+    private long lastNanos;
+    @Getter
+    private long totalNanos;
+
+    /**
+     * @param threads most threads running systems, counting the one calling {@link #update(float)}.
+     */
+    public SystemScheduler(int threads) {
+        this.maxThreads = Math.max(1, threads);
+    }
+
+    public void add(EntitySystem system) {
+        final Access access = system.getClass().getAnnotation(Access.class);
+        final Node node = new Node(system, access != null ? access : UNDECLARED, access == null);
+        if (profiler != null) {
+            node.histogram = profiler.time(histogramName(system));
+        }
+
+        for (Node earlier : nodes) {
+            if (node.conflictsWith(earlier)) {
+                earlier.dependents.add(node);
+                node.dependencies++;
+                node.level = Math.max(node.level, earlier.level + 1);
+            }
+        }
+        nodes.add(node);
+
+        if (node.level == levelSizes.size()) {
+            levelSizes.add(1);
+        } else {
+            levelSizes.set(node.level, levelSizes.get(node.level) + 1);
+        }
+    }
+
+    /**
+     * Threads running systems, counting the one calling {@link #update(float)}: as many as
+     * systems at the same depth of the dependency graph, at most as many as given.
+     */
+    public int getThreads() {
+        int width = 1;
+        for (int size : levelSizes) {
+            width = Math.max(width, size);
+        }
+        return Math.min(maxThreads, width);
+    }
+
+    public void setProfiler(Profiler profiler) {
+        this.profiler = profiler;
+        for (Node node : nodes) {
+            node.histogram = profiler != null ? profiler.time(histogramName(node.system)) : null;
+        }
+    }
+
+    public List<Timing> getTimings() {
+        return Collections.unmodifiableList(nodes);
+    }
+
+    /**
+     * Time spent in systems over wall-clock time of all updates so far: 1 when systems ran one
+     * after another, up to {@link #getThreads()} when they all overlapped.
+     */
+    public double getParallelism() {
+        long sum = 0;
+        for (Node node : nodes) {
+            sum += node.totalNanos;
+        }
+        return totalNanos > 0 ? (double) sum / totalNanos : 0.0;
+    }
+
+    /**
+     * Updates every system once, returns when all of them are done.
+     */
+    public void update(float deltaTime) {
+        final long start = System.nanoTime();
+
+        /// NOTE: systems can be added between updates, only ever starts more workers
+        while (workers.size() < getThreads() - 1) {
+            final Thread worker = new Thread(this::work, "system-worker-" + workers.size());
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+
+        synchronized (lock) {
+            this.deltaTime = deltaTime;
+            remaining = nodes.size();
+            for (Node node : nodes) {
+                node.pending = node.dependencies;
+                if (node.dependencies == 0) {
+                    ready(node);
+                }
+            }
+        }
+
+        while (true) {
+            final Node node;
+            synchronized (lock) {
+                Node next = mainReady.poll();
+                if (next == null) {
+                    next = anyReady.poll();
+                }
+                while (next == null && remaining > 0) {
+                    waitForLock();
+                    next = mainReady.poll();
+                    if (next == null) {
+                        next = anyReady.poll();
+                    }
+                }
+                if (next == null) {
+                    break;
+                }
+                node = next;
+            }
+            run(node);
+        }
+
+        lastNanos = System.nanoTime() - start;
+        totalNanos += lastNanos;
+
+        final Throwable cause;
+        synchronized (lock) {
+            cause = failure;
+            failure = null;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        if (cause != null) {
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    public void shutdown() {
+        synchronized (lock) {
+            shutdown = true;
+            lock.notifyAll();
+        }
+    }
+
+    private void work() {
+        while (true) {
+            final Node node;
+            synchronized (lock) {
+                while (anyReady.isEmpty() && !shutdown) {
+                    waitForLock();
+                }
+                if (shutdown) {
+                    return;
+                }
+                node = anyReady.poll();
+            }
+            run(node);
+        }
+    }
+
+    private void run(Node node) {
+        final float deltaTime;
+        final boolean failed;
+        synchronized (lock) {
+            deltaTime = this.deltaTime;
+            failed = failure != null;
+        }
+
+        final long start = System.nanoTime();
+        Throwable thrown = null;
+        /// NOTE: after a failure the remaining systems are only counted down, not run
+        if (!failed) {
+            try {
+                node.system.update(deltaTime);
+            } catch (Throwable e) {
+                thrown = e;
+            }
+        }
+        final long nanos = System.nanoTime() - start;
+
+        synchronized (lock) {
+            node.lastNanos = nanos;
+            node.totalNanos += nanos;
+            node.runs++;
+            if (profiler != null && profiler.isEnabled()) {
+                node.histogram.record(nanos);
+            }
+            if (thrown != null && failure == null) {
+                failure = thrown;
+            }
+
+            for (Node dependent : node.dependents) {
+                if (--dependent.pending == 0) {
+                    ready(dependent);
+                }
+            }
+            if (--remaining == 0) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private static String histogramName(EntitySystem system) {
+        return Profiler.SYSTEM_PREFIX + system.getClass().getSimpleName();
+    }
+
+    /// NOTE: called holding `lock`
+    private void ready(Node node) {
+        if (node.access.mainThread()) {
+            mainReady.add(node);
+        } else {
+            anyReady.add(node);
+        }
+        lock.notifyAll();
+    }
+
+    /// NOTE: called holding `lock`
+    private void waitForLock() {
+        try {
+            lock.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while updating systems", e);
+        }
+    }
+
+    /**
+     * Time spent in a single system.
+     */
+    public interface Timing {
+        EntitySystem getSystem();
+
+        long getLastNanos();
+
+        long getTotalNanos();
+
+        long getRuns();
+    }
+
+    private static final class Node implements Timing {
+        @Getter
+        private final EntitySystem system;
+        private final Access access;
+
+        /// NOTE: no declaration, conflicts with every other system
+        private final boolean exclusive;
+
+        private final Set<Class<?>> reads;
+        private final Set<Class<?>> writes;
+
+        /// NOTE: later conflicting systems, and the number of earlier ones
+        private final List<Node> dependents = new ArrayList<>();
+        private int dependencies;
+        private int pending;
+
+        /// NOTE: longest chain of earlier conflicting systems
+        private int level;
+
+        /// NOTE: written holding the scheduler's lock, read without it for reporting
+        @Getter
+        private volatile long lastNanos;
+        @Getter
+        private volatile long totalNanos;
+        @Getter
+        private volatile long runs;
+
+        private Histogram histogram;
+
+        Node(EntitySystem system, Access access, boolean exclusive) {
+            this.system = system;
+            this.access = access;
+            this.exclusive = exclusive;
+            this.reads = new HashSet<>(Arrays.asList(access.reads()));
+            this.writes = new HashSet<>(Arrays.asList(access.writes()));
+        }
+
+        boolean conflictsWith(Node other) {
+            return exclusive || other.exclusive
+                    || intersects(writes, other.writes)
+                    || intersects(writes, other.reads)
+                    || intersects(reads, other.writes);
+        }
+
+        private static boolean intersects(Set<Class<?>> a, Set<Class<?>> b) {
+            for (Class<?> type : a) {
+                if (b.contains(type)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    @Access(mainThread = true)
+    private static final class Undeclared {
+    }
+}
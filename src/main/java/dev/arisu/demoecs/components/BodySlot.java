@@ -0,0 +1,20 @@
+package dev.arisu.demoecs.components;
+
+import com.badlogic.ashley.core.Component;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Marks an entity whose hot components live in {@link dev.arisu.demoecs.resources.BodiesResource}
+ * rather than in component objects, and holds its slot there.
+ */
+@Getter
+@ToString
+public final class BodySlot implements Component {
+    /// NOTE: changes when another body is removed, `-1` once the body is removed itself
+    public int index;
+
+    public BodySlot(int index) {
+        this.index = index;
+    }
+}
@@ -0,0 +1,44 @@
+package dev.arisu.demoecs.components;
+
+import com.badlogic.ashley.core.Component;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * {@link Position} as of the previous simulation tick, for interpolated rendering.
+ */
+@Getter
+@Setter
+@ToString
+public final class PreviousPosition implements Component {
+    public float x;
+    public float y;
+    public float z;
+
+    public PreviousPosition() {
+        this(0.0f, 0.0f, 0.0f);
+    }
+
+    public PreviousPosition(float x, float y, float z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    public PreviousPosition(Position position) {
+        this(position.x, position.y, position.z);
+    }
+
+    public float lerpX(Position current, float alpha) {
+        return x + (current.x - x) * alpha;
+    }
+
+    public float lerpY(Position current, float alpha) {
+        return y + (current.y - y) * alpha;
+    }
+
+    public float lerpZ(Position current, float alpha) {
+        return z + (current.z - z) * alpha;
+    }
+}
@@ -0,0 +1,153 @@
+package dev.arisu.demoecs.resources;
+
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.EntityListener;
+import com.badlogic.ashley.core.Family;
+import dev.arisu.demoecs.components.BodySlot;
+import java.util.Arrays;
+import lombok.Getter;
+
+/**
+ * Structure-of-arrays storage for bodies: entities whose position, previous position, velocity,
+ * rotation, scale, bounding box and on-ground flag are kept in dense columns instead of
+ * component objects, so that systems can go through all of them linearly.
+ * <p>
+ * A body is an entity with a {@link BodySlot}, holding its index into every column. Slots stay
+ * contiguous: removing a body moves the last one into its slot. Columns are replaced when they
+ * grow, so systems must not keep references to them between updates.
+ * <p>
+ * The resource must be registered as a listener of {@link #FAMILY}, so that bodies removed
+ * from the engine free their slots.
+ */
+public class BodiesResource implements EntityListener {
+    public static final Family FAMILY = Family.all(BodySlot.class).get();
+
+    @Getter
+    private int size;
+
+    public float[] x, y, z;
+    public float[] prevX, prevY, prevZ;
+    public float[] vx, vy, vz;
+    public float[] roll, pitch, yaw;
+    public float[] scaleX, scaleY, scaleZ;
+    public float[] width, depth, height;
+    public boolean[] onGround;
+
+    private Entity[] entities;
+
+    public BodiesResource() {
+        this(64);
+    }
+
+    public BodiesResource(int capacity) {
+        allocate(Math.max(1, capacity));
+    }
+
+    /**
+     * Gives the entity a {@link BodySlot} and a body at the given position, at rest, unrotated
+     * and unscaled. Must be called before the entity is added to the engine.
+     *
+     * @return slot of the body.
+     */
+    public int add(Entity entity,
+                   float x, float y, float z,
+                   float width, float depth, float height) {
+        if (size == entities.length) {
+            allocate(size * 2);
+        }
+
+        final int slot = size++;
+        entities[slot] = entity;
+
+        this.x[slot] = prevX[slot] = x;
+        this.y[slot] = prevY[slot] = y;
+        this.z[slot] = prevZ[slot] = z;
+        vx[slot] = vy[slot] = vz[slot] = 0.0f;
+        roll[slot] = pitch[slot] = yaw[slot] = 0.0f;
+        scaleX[slot] = scaleY[slot] = scaleZ[slot] = 1.0f;
+        this.width[slot] = width;
+        this.depth[slot] = depth;
+        this.height[slot] = height;
+        onGround[slot] = false;
+
+        entity.add(new BodySlot(slot));
+        return slot;
+    }
+
+    public Entity getEntity(int slot) {
+        return entities[slot];
+    }
+
+    @Override
+    public void entityAdded(Entity entity) {
+    }
+
+    @Override
+    public void entityRemoved(Entity entity) {
+        final BodySlot bodySlot = entity.getComponent(BodySlot.class);
+        if (bodySlot != null && bodySlot.index >= 0) {
+            remove(bodySlot.index);
+            bodySlot.index = -1;
+        }
+    }
+
+    /**
+     * Moves the last body into the slot.
+     */
+    private void remove(int slot) {
+        final int last = --size;
+
+        if (slot != last) {
+            x[slot] = x[last];
+            y[slot] = y[last];
+            z[slot] = z[last];
+            prevX[slot] = prevX[last];
+            prevY[slot] = prevY[last];
+            prevZ[slot] = prevZ[last];
+            vx[slot] = vx[last];
+            vy[slot] = vy[last];
+            vz[slot] = vz[last];
+            roll[slot] = roll[last];
+            pitch[slot] = pitch[last];
+            yaw[slot] = yaw[last];
+            scaleX[slot] = scaleX[last];
+            scaleY[slot] = scaleY[last];
+            scaleZ[slot] = scaleZ[last];
+            width[slot] = width[last];
+            depth[slot] = depth[last];
+            height[slot] = height[last];
+            onGround[slot] = onGround[last];
+
+            entities[slot] = entities[last];
+            entities[slot].getComponent(BodySlot.class).index = slot;
+        }
+        entities[last] = null;
+    }
+
+    private void allocate(int capacity) {
+        x = grow(x, capacity);
+        y = grow(y, capacity);
+        z = grow(z, capacity);
+        prevX = grow(prevX, capacity);
+        prevY = grow(prevY, capacity);
+        prevZ = grow(prevZ, capacity);
+        vx = grow(vx, capacity);
+        vy = grow(vy, capacity);
+        vz = grow(vz, capacity);
+        roll = grow(roll, capacity);
+        pitch = grow(pitch, capacity);
+        yaw = grow(yaw, capacity);
+        scaleX = grow(scaleX, capacity);
+        scaleY = grow(scaleY, capacity);
+        scaleZ = grow(scaleZ, capacity);
+        width = grow(width, capacity);
+        depth = grow(depth, capacity);
+        height = grow(height, capacity);
+        onGround = onGround == null ? new boolean[capacity] : Arrays.copyOf(onGround, capacity);
+        entities = entities == null ? new Entity[capacity] : Arrays.copyOf(entities, capacity);
+    }
+
+    private static float[] grow(float[] column, int capacity) {
+        return column == null ? new float[capacity] : Arrays.copyOf(column, capacity);
+    }
+}
@@ -0,0 +1,68 @@
+package dev.arisu.demoecs.resources;
+
+import com.badlogic.ashley.core.Entity;
+import java.util.Arrays;
+import lombok.Getter;
+
+/**
+ * Pairs of entities whose bounding boxes overlapped during the last tick, overwritten every tick
+ * by {@link dev.arisu.demoecs.systems.EntityCollisionSystem}.
+ * <p>
+ * The normal of contact {@code i} is a unit axis pointing from entity B towards entity A,
+ * depth is how far the boxes overlapped along it before being pushed apart.
+ */
+public class ContactsResource {
+    private Entity[] entitiesA = new Entity[64];
+    private Entity[] entitiesB = new Entity[64];
+    private float[] normals = new float[64 * 3];
+    private float[] depths = new float[64];
+
+    @Getter
+    private int count;
+
+    public void clear() {
+        Arrays.fill(entitiesA, 0, count, null);
+        Arrays.fill(entitiesB, 0, count, null);
+        count = 0;
+    }
+
+    public void add(Entity a, Entity b, float nx, float ny, float nz, float depth) {
+        if (count == depths.length) {
+            entitiesA = Arrays.copyOf(entitiesA, count * 2);
+            entitiesB = Arrays.copyOf(entitiesB, count * 2);
+            normals = Arrays.copyOf(normals, count * 2 * 3);
+            depths = Arrays.copyOf(depths, count * 2);
+        }
+        entitiesA[count] = a;
+        entitiesB[count] = b;
+        normals[count * 3] = nx;
+        normals[count * 3 + 1] = ny;
+        normals[count * 3 + 2] = nz;
+        depths[count] = depth;
+        count++;
+    }
+
+    public Entity getEntityA(int i) {
+        return entitiesA[i];
+    }
+
+    public Entity getEntityB(int i) {
+        return entitiesB[i];
+    }
+
+    public float getNormalX(int i) {
+        return normals[i * 3];
+    }
+
+    public float getNormalY(int i) {
+        return normals[i * 3 + 1];
+    }
+
+    public float getNormalZ(int i) {
+        return normals[i * 3 + 2];
+    }
+
+    public float getDepth(int i) {
+        return depths[i];
+    }
+}
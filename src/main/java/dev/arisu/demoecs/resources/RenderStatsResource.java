@@ -0,0 +1,36 @@
+package dev.arisu.demoecs.resources;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Per-frame counters of the render systems, overwritten every frame.
+ */
+@Getter
+@Setter
+public class RenderStatsResource {
+    private int chunksDrawn;
+    private int chunksCulled;
+
+    /// NOTE: in the frustum, but hidden behind solid terrain
+    private int chunksOccluded;
+
+    private int entitiesDrawn;
+    private int entitiesCulled;
+
+    /// NOTE: meshes uploaded this frame
+    private int chunksMeshed;
+    private int chunkVertices;
+
+    private int entityDrawCalls;
+    private int entityVertices;
+
+    /// NOTE: one call per drawn chunk
+    public int getDrawCalls() {
+        return chunksDrawn + entityDrawCalls;
+    }
+
+    public int getVerticesSubmitted() {
+        return chunkVertices + entityVertices;
+    }
+}
@@ -0,0 +1,18 @@
+package dev.arisu.demoecs.resources;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Simulation clock, written by {@link dev.arisu.demoecs.GameLoop}.
+ */
+@Getter
+@Setter
+public class TimeResource {
+    /// NOTE: number of simulation ticks run so far
+    private long ticks;
+
+    /// NOTE: fraction of a tick elapsed since the last one, render systems interpolate
+    /// between the previous and the current state by it
+    private float alpha;
+}
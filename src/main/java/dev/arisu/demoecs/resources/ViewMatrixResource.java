@@ -2,10 +2,15 @@ package dev.arisu.demoecs.resources;
 
 import lombok.Getter;
 import lombok.Setter;
+import org.joml.FrustumIntersection;
 import org.joml.Matrix4f;
 
 @Getter
 @Setter
 public class ViewMatrixResource {
     private Matrix4f viewMatrix;
+    private Matrix4f projMatrix;
+
+    /// NOTE: frustum of `projMatrix * viewMatrix`, for culling
+    private final FrustumIntersection frustum = new FrustumIntersection();
 }
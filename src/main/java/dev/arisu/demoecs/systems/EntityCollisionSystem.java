@@ -0,0 +1,254 @@
+package dev.arisu.demoecs.systems;
+
+import com.badlogic.ashley.core.ComponentMapper;
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.EntitySystem;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.ashley.utils.ImmutableArray;
+import dev.arisu.demoecs.Access;
+import dev.arisu.demoecs.components.BoundingBox;
+import dev.arisu.demoecs.components.Flags;
+import dev.arisu.demoecs.components.Position;
+import dev.arisu.demoecs.components.Velocity;
+import dev.arisu.demoecs.resources.BodiesResource;
+import dev.arisu.demoecs.resources.ContactsResource;
+import java.util.Arrays;
+
+/**
+ * Pushes apart entities whose bounding boxes overlap after {@link MoveSystem} has moved them,
+ * and records every such pair into {@link ContactsResource}.
+ * <p>
+ * Candidate pairs come from a {@link SpatialHash} refilled every tick, so each entity is only
+ * tested against entities in the same cells. Overlapping boxes are separated along the axis
+ * of least penetration, each moving half the way, or the whole way if the other one has no
+ * {@link Velocity}. Velocity towards the other box along that axis is dropped. Pairs are resolved
+ * once per tick, in no particular order, so piles of entities settle over several ticks.
+ * <p>
+ * Bodies of {@link BodiesResource}, if given one, collide with entities and with each other
+ * the same way.
+ */
+@Access(reads = BoundingBox.class,
+        writes = {Position.class, Velocity.class, Flags.class, BodiesResource.class, ContactsResource.class})
+public class EntityCollisionSystem extends EntitySystem {
+
+    /// NOTE: larger than the usual bounding box, so that most boxes fall into one to four cells
+    public static final float DEFAULT_CELL_SIZE = 2.0f;
+
+    /// NOTE: boxes are pushed this much further than just touching, like `MoveSystem` does
+    /// against the terrain, so that rounding doesn't leave them overlapping
+    private static final float SEPARATION = 0.0005f;
+
+    private ComponentMapper<Position> pm = ComponentMapper.getFor(Position.class);
+    private ComponentMapper<BoundingBox> bbm = ComponentMapper.getFor(BoundingBox.class);
+    private ComponentMapper<Velocity> vm = ComponentMapper.getFor(Velocity.class);
+    private ComponentMapper<Flags> fm = ComponentMapper.getFor(Flags.class);
+
+    private ImmutableArray<Entity> entities;
+
+    private final ContactsResource contactsResource;
+    private final SpatialHash hash;
+    private final SpatialHash.PairConsumer resolver = this::resolve;
+    private final Pushed pushed = new Pushed();
+
+    /// NOTE: `null` when bodies aren't used
+    private final BodiesResource bodies;
+
+    /// NOTE: entity of every box id in the hash below `entityCount`,
+    /// ids from `entityCount` on are body slots offset by it
+    private Entity[] boxes = new Entity[64];
+    private int entityCount;
+
+    public EntityCollisionSystem(ContactsResource contactsResource) {
+        this(contactsResource, null, DEFAULT_CELL_SIZE);
+    }
+
+    public EntityCollisionSystem(ContactsResource contactsResource, BodiesResource bodies) {
+        this(contactsResource, bodies, DEFAULT_CELL_SIZE);
+    }
+
+    public EntityCollisionSystem(ContactsResource contactsResource, BodiesResource bodies, float cellSize) {
+        this.contactsResource = contactsResource;
+        this.bodies = bodies;
+        this.hash = new SpatialHash(cellSize);
+    }
+
+    @Override
+    public void addedToEngine(Engine engine) {
+        entities = engine.getEntitiesFor(Family.all(Position.class, BoundingBox.class).get());
+    }
+
+    @Override
+    public void update(float deltaTime) {
+        final int count = entities.size();
+
+        contactsResource.clear();
+        hash.clear();
+
+        if (boxes.length < count) {
+            boxes = new Entity[Math.max(count, boxes.length * 2)];
+        }
+
+        for (int i = 0; i < count; ++i) {
+            final Entity entity = entities.get(i);
+            final Position position = pm.get(entity);
+            final BoundingBox boundingBox = bbm.get(entity);
+
+            final int id = add(position.x, position.y, position.z,
+                    boundingBox.width, boundingBox.depth, boundingBox.height);
+            boxes[id] = entity;
+        }
+
+        entityCount = count;
+
+        for (int slot = 0, n = bodies != null ? bodies.getSize() : 0; slot < n; ++slot) {
+            add(bodies.x[slot], bodies.y[slot], bodies.z[slot],
+                    bodies.width[slot], bodies.depth[slot], bodies.height[slot]);
+        }
+
+        hash.forEachOverlap(resolver);
+
+        Arrays.fill(boxes, 0, count, null);
+    }
+
+    /**
+     * @param x bottom center of the box, like {@link Position}.
+     * @return id of the box in the hash.
+     */
+    private int add(float x, float y, float z, float width, float depth, float height) {
+        final float halfWidth = width * 0.5f;
+        final float halfDepth = depth * 0.5f;
+
+        return hash.add(x - halfWidth, y - halfDepth, z,
+                x + halfWidth, y + halfDepth, z + height);
+    }
+
+    private void resolve(int a, int b) {
+        // penetration along each axis, the boxes are known to overlap on all three
+        int axis = 0;
+        float depth = Float.POSITIVE_INFINITY;
+        for (int i = 0; i < 3; ++i) {
+            final float overlap = Math.min(hash.getMax(a, i), hash.getMax(b, i))
+                    - Math.max(hash.getMin(a, i), hash.getMin(b, i));
+            if (overlap < depth) {
+                depth = overlap;
+                axis = i;
+            }
+        }
+
+        final float centerA = hash.getMin(a, axis) + hash.getMax(a, axis);
+        final float centerB = hash.getMin(b, axis) + hash.getMax(b, axis);
+        final float sign = centerA < centerB ? -1.0f : 1.0f;
+
+        final boolean dynamicA = isDynamic(a);
+        final boolean dynamicB = isDynamic(b);
+
+        final float shareA, shareB;
+        if (dynamicA && dynamicB) {
+            shareA = 0.5f;
+            shareB = 0.5f;
+        } else {
+            shareA = dynamicA ? 1.0f : 0.0f;
+            shareB = dynamicB ? 1.0f : 0.0f;
+        }
+
+        push(a, axis, sign, (depth + SEPARATION) * shareA);
+        push(b, axis, -sign, (depth + SEPARATION) * shareB);
+
+        contactsResource.add(getEntity(a), getEntity(b),
+                axis == 0 ? sign : 0.0f,
+                axis == 1 ? sign : 0.0f,
+                axis == 2 ? sign : 0.0f,
+                depth);
+    }
+
+    private Entity getEntity(int id) {
+        return id < entityCount ? boxes[id] : bodies.getEntity(id - entityCount);
+    }
+
+    /**
+     * @return whether the box can be pushed: bodies always move, entities only with a {@link Velocity}.
+     */
+    private boolean isDynamic(int id) {
+        return id >= entityCount || vm.has(boxes[id]);
+    }
+
+    private void push(int id, int axis, float sign, float distance) {
+        final Pushed box = pushed;
+
+        if (id < entityCount) {
+            final Entity entity = boxes[id];
+            final Velocity velocity = vm.get(entity);
+            if (velocity == null) {
+                return;
+            }
+            final Position position = pm.get(entity);
+            final Flags flags = fm.get(entity);
+
+            box.position[0] = position.x;
+            box.position[1] = position.y;
+            box.position[2] = position.z;
+            box.velocity[0] = velocity.x;
+            box.velocity[1] = velocity.y;
+            box.velocity[2] = velocity.z;
+            box.onGround = flags != null && flags.isOnGround();
+
+            push(box, axis, sign, distance);
+
+            position.x = box.position[0];
+            position.y = box.position[1];
+            position.z = box.position[2];
+            velocity.x = box.velocity[0];
+            velocity.y = box.velocity[1];
+            velocity.z = box.velocity[2];
+            if (flags != null) {
+                flags.setOnGround(box.onGround);
+            }
+            return;
+        }
+
+        final int slot = id - entityCount;
+
+        box.position[0] = bodies.x[slot];
+        box.position[1] = bodies.y[slot];
+        box.position[2] = bodies.z[slot];
+        box.velocity[0] = bodies.vx[slot];
+        box.velocity[1] = bodies.vy[slot];
+        box.velocity[2] = bodies.vz[slot];
+        box.onGround = bodies.onGround[slot];
+
+        push(box, axis, sign, distance);
+
+        bodies.x[slot] = box.position[0];
+        bodies.y[slot] = box.position[1];
+        bodies.z[slot] = box.position[2];
+        bodies.vx[slot] = box.velocity[0];
+        bodies.vy[slot] = box.velocity[1];
+        bodies.vz[slot] = box.velocity[2];
+        bodies.onGround[slot] = box.onGround;
+    }
+
+    /**
+     * Moves the box by {@code distance} along the axis in direction of {@code sign},
+     * and drops its velocity in the opposite direction.
+     */
+    private static void push(Pushed box, int axis, float sign, float distance) {
+        box.position[axis] += sign * distance;
+        if (box.velocity[axis] * sign < 0.0f) {
+            box.velocity[axis] = 0.0f;
+        }
+        // pushed up means standing on the other box
+        if (axis == 2 && sign > 0.0f) {
+            box.onGround = true;
+        }
+    }
+
+    /**
+     * Box being pushed, loaded from an entity or a body.
+     */
+    private static final class Pushed {
+        private final float[] position = new float[3];
+        private final float[] velocity = new float[3];
+        private boolean onGround;
+    }
+}
@@ -6,21 +6,33 @@ import com.badlogic.ashley.core.Entity;
 import com.badlogic.ashley.core.EntitySystem;
 import com.badlogic.ashley.core.Family;
 import com.badlogic.ashley.utils.ImmutableArray;
+import dev.arisu.demoecs.Access;
+import dev.arisu.demoecs.components.BoundingBox;
 import dev.arisu.demoecs.components.PlayerTag;
 import dev.arisu.demoecs.components.Position;
+import dev.arisu.demoecs.components.PreviousPosition;
 import dev.arisu.demoecs.components.Rotation;
 import dev.arisu.demoecs.components.Scale;
+import dev.arisu.demoecs.resources.BodiesResource;
+import dev.arisu.demoecs.resources.RenderStatsResource;
+import dev.arisu.demoecs.resources.TimeResource;
 import dev.arisu.demoecs.resources.ViewMatrixResource;
 import dev.arisu.demoecs.util.File;
 import java.io.IOException;
 import java.nio.FloatBuffer;
+import org.joml.FrustumIntersection;
 import org.joml.Matrix4f;
 import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+import static org.lwjgl.opengl.ARBDrawInstanced.glDrawArraysInstancedARB;
+import static org.lwjgl.opengl.ARBInstancedArrays.glVertexAttribDivisorARB;
 import static org.lwjgl.opengl.GL20.GL_ARRAY_BUFFER;
 import static org.lwjgl.opengl.GL20.GL_FLOAT;
 import static org.lwjgl.opengl.GL20.GL_FRAGMENT_SHADER;
 import static org.lwjgl.opengl.GL20.GL_QUADS;
 import static org.lwjgl.opengl.GL20.GL_STATIC_DRAW;
+import static org.lwjgl.opengl.GL20.GL_STREAM_DRAW;
 import static org.lwjgl.opengl.GL20.GL_VERTEX_SHADER;
 import static org.lwjgl.opengl.GL20.glAttachShader;
 import static org.lwjgl.opengl.GL20.glBindBuffer;
@@ -42,14 +54,24 @@ import static org.lwjgl.opengl.GL20.glUniformMatrix4fv;
 import static org.lwjgl.opengl.GL20.glUseProgram;
 import static org.lwjgl.opengl.GL20.glVertexAttribPointer;
 
+@Access(reads = {Position.class, PreviousPosition.class, Rotation.class, Scale.class, BoundingBox.class,
+        BodiesResource.class, TimeResource.class, ViewMatrixResource.class},
+        writes = RenderStatsResource.class, mainThread = true)
 public class EntityRenderSystem extends EntitySystem {
     private ComponentMapper<Position> pm = ComponentMapper.getFor(Position.class);
+    private ComponentMapper<PreviousPosition> ppm = ComponentMapper.getFor(PreviousPosition.class);
     private ComponentMapper<Rotation> rm = ComponentMapper.getFor(Rotation.class);
     private ComponentMapper<Scale> sm = ComponentMapper.getFor(Scale.class);
+    private ComponentMapper<BoundingBox> bbm = ComponentMapper.getFor(BoundingBox.class);
 
     private ImmutableArray<Entity> entities;
 
     private ViewMatrixResource viewMatrixResource;
+    private RenderStatsResource renderStatsResource;
+    private TimeResource timeResource;
+
+    /// NOTE: `null` when bodies aren't used
+    private BodiesResource bodies;
 
     private int program;
     private int vertexLoc;
@@ -57,6 +79,21 @@ public class EntityRenderSystem extends EntitySystem {
     private int projULoc, viewULoc, modelULoc;
     private int buffer;
 
+    /// NOTE: instanced path, used when ARB_instanced_arrays and ARB_draw_instanced are available
+    private final boolean instanced;
+    private int instancedProgram;
+    private int instancedVertexLoc;
+    private int instancedColorLoc;
+    private final int[] instancedModelLocs = new int[4];
+    private int instancedProjULoc, instancedViewULoc;
+    private int instanceBuffer;
+
+    /// NOTE: model matrices of visible entities, 16 floats each, grown on demand
+    private FloatBuffer instanceData = BufferUtils.createFloatBuffer(16 * 1024);
+
+    private final FloatBuffer fb = BufferUtils.createFloatBuffer(16);
+    private final Matrix4f modelMatrix = new Matrix4f();
+
     private static final float[] CUBE_VERTICES = new float[]{
             0.5f, -0.5f, 0.0f, 1.0f, 0.0f, 0.0f,
             -0.5f, -0.5f, 0.0f, 1.0f, 0.0f, 0.0f,
@@ -89,38 +126,25 @@ public class EntityRenderSystem extends EntitySystem {
             -0.5f, -0.5f, 0.0f, 1.0f, 0.0f, 1.0f,
     };
 
-    public EntityRenderSystem(ViewMatrixResource viewMatrixResource) {
-        this.viewMatrixResource = viewMatrixResource;
-
-        String vertexSrc = null;
-        String fragmentSrc = null;
+    /// NOTE: position and color, 6 floats per vertex
+    private static final int CUBE_VERTEX_COUNT = CUBE_VERTICES.length / 6;
 
-        try {
-            vertexSrc = File.readToString("vertex.glsl");
-            fragmentSrc = File.readToString("fragment.glsl");
-        } catch (IOException e) {
-            e.printStackTrace();
-            System.exit(1);
-        }
-
-        int vertexShader = glCreateShader(GL_VERTEX_SHADER);
-        glShaderSource(vertexShader, vertexSrc);
-        glCompileShader(vertexShader);
-
-        System.out.println(glGetShaderInfoLog(vertexShader));
-
-        int fragmentShader = glCreateShader(GL_FRAGMENT_SHADER);
-        glShaderSource(fragmentShader, fragmentSrc);
-        glCompileShader(fragmentShader);
-
-        System.out.println(glGetShaderInfoLog(fragmentShader));
+    public EntityRenderSystem(ViewMatrixResource viewMatrixResource,
+                              RenderStatsResource renderStatsResource,
+                              TimeResource timeResource) {
+        this(viewMatrixResource, renderStatsResource, timeResource, null);
+    }
 
-        int program = glCreateProgram();
-        glAttachShader(program, vertexShader);
-        glAttachShader(program, fragmentShader);
-        glLinkProgram(program);
+    public EntityRenderSystem(ViewMatrixResource viewMatrixResource,
+                              RenderStatsResource renderStatsResource,
+                              TimeResource timeResource,
+                              BodiesResource bodies) {
+        this.viewMatrixResource = viewMatrixResource;
+        this.renderStatsResource = renderStatsResource;
+        this.timeResource = timeResource;
+        this.bodies = bodies;
 
-        System.out.println(glGetProgramInfoLog(program));
+        int program = compileProgram("vertex.glsl", "fragment.glsl");
 
         this.program = program;
 
@@ -138,6 +162,26 @@ public class EntityRenderSystem extends EntitySystem {
         glBindBuffer(GL_ARRAY_BUFFER, this.buffer);
         glBufferData(GL_ARRAY_BUFFER, verticesBuf, GL_STATIC_DRAW);
         glBindBuffer(GL_ARRAY_BUFFER, 0);
+
+        GLCapabilities caps = GL.getCapabilities();
+        this.instanced = caps.GL_ARB_instanced_arrays && caps.GL_ARB_draw_instanced;
+
+        if (instanced) {
+            int instancedProgram = compileProgram("entity_instanced_vertex.glsl", "fragment.glsl");
+
+            this.instancedProgram = instancedProgram;
+
+            this.instancedColorLoc = glGetAttribLocation(instancedProgram, "in_Color");
+            this.instancedVertexLoc = glGetAttribLocation(instancedProgram, "in_Position");
+            for (int i = 0; i < 4; ++i) {
+                this.instancedModelLocs[i] = glGetAttribLocation(instancedProgram, "in_Model" + i);
+            }
+
+            this.instancedProjULoc = glGetUniformLocation(instancedProgram, "projMatrix");
+            this.instancedViewULoc = glGetUniformLocation(instancedProgram, "viewMatrix");
+
+            this.instanceBuffer = glGenBuffers();
+        }
     }
 
     @Override
@@ -149,15 +193,73 @@ public class EntityRenderSystem extends EntitySystem {
 
     @Override
     public void update(float deltaTime) {
-        FloatBuffer fb = BufferUtils.createFloatBuffer(16);
+        final FrustumIntersection frustum = viewMatrixResource.getFrustum();
+        final float alpha = timeResource.getAlpha();
+        int drawn = 0, culled = 0;
+
+        begin();
+
+        for (Entity entity : entities) {
+            final Position position = pm.get(entity);
+            final BoundingBox boundingBox = bbm.get(entity);
+            if (boundingBox != null && !isVisible(frustum, position.x, position.y, position.z,
+                    boundingBox.width, boundingBox.depth, boundingBox.height)) {
+                culled++;
+                continue;
+            }
+            drawn++;
+
+            final PreviousPosition previous = ppm.get(entity);
+            final Rotation rotation = rm.get(entity);
+            final Scale scale = sm.get(entity);
+
+            draw(computeModelMatrix(
+                    previous != null ? previous.lerpX(position, alpha) : position.x,
+                    previous != null ? previous.lerpY(position, alpha) : position.y,
+                    previous != null ? previous.lerpZ(position, alpha) : position.z,
+                    scale.x, scale.y, scale.z,
+                    rotation.roll, rotation.pitch, rotation.yaw));
+        }
 
-        Matrix4f projMatrix = new Matrix4f();
-        projMatrix.perspective(
-                (float) Math.toRadians(70.0f),
-                800.f / 600.f, 0.05f, 1000.0f);
+        for (int slot = 0, n = bodies != null ? bodies.getSize() : 0; slot < n; ++slot) {
+            if (!isVisible(frustum, bodies.x[slot], bodies.y[slot], bodies.z[slot],
+                    bodies.width[slot], bodies.depth[slot], bodies.height[slot])) {
+                culled++;
+                continue;
+            }
+            drawn++;
+
+            draw(computeModelMatrix(
+                    lerp(bodies.prevX[slot], bodies.x[slot], alpha),
+                    lerp(bodies.prevY[slot], bodies.y[slot], alpha),
+                    lerp(bodies.prevZ[slot], bodies.z[slot], alpha),
+                    bodies.scaleX[slot], bodies.scaleY[slot], bodies.scaleZ[slot],
+                    bodies.roll[slot], bodies.pitch[slot], bodies.yaw[slot]));
+        }
+
+        end(drawn);
+
+        renderStatsResource.setEntitiesDrawn(drawn);
+        renderStatsResource.setEntitiesCulled(culled);
+        renderStatsResource.setEntityDrawCalls(instanced ? 1 : drawn);
+        renderStatsResource.setEntityVertices(drawn * CUBE_VERTEX_COUNT);
+    }
+
+    /**
+     * Instanced: starts collecting model matrices into a single instance buffer.
+     * Otherwise, for contexts without instancing: sets up drawing one cube per call.
+     */
+    private void begin() {
+        if (instanced) {
+            instanceData.clear();
+            return;
+        }
 
         glUseProgram(program);
 
+        glUniformMatrix4fv(projULoc, false, viewMatrixResource.getProjMatrix().get(fb));
+        glUniformMatrix4fv(viewULoc, false, viewMatrixResource.getViewMatrix().get(fb));
+
         glEnableVertexAttribArray(vertexLoc);
         glEnableVertexAttribArray(colorLoc);
 
@@ -166,31 +268,148 @@ public class EntityRenderSystem extends EntitySystem {
         /// NOTE: `24` and `12` here are offsets in bytes
         glVertexAttribPointer(vertexLoc, 3, GL_FLOAT, false, 24, 0);
         glVertexAttribPointer(colorLoc, 3, GL_FLOAT, false, 24, 12);
+    }
 
-        for (Entity entity : entities) {
-            Position position = pm.get(entity);
-            Rotation rotation = rm.get(entity);
-            Scale scale = sm.get(entity);
-
-            Matrix4f modelMatrix = new Matrix4f()
-                    .translate(position.x, position.y, position.z)
-                    .scale(scale.x, scale.y, scale.z)
-                    .rotateZ((float) Math.toRadians(rotation.yaw))
-                    .rotateX((float) Math.toRadians(rotation.roll))
-                    .rotateY((float) Math.toRadians(rotation.pitch));
-
-            glUniformMatrix4fv(projULoc, false, projMatrix.get(fb));
-            glUniformMatrix4fv(viewULoc, false, viewMatrixResource.getViewMatrix().get(fb));
-            glUniformMatrix4fv(modelULoc, false, modelMatrix.get(fb));
-
-            glDrawArrays(GL_QUADS, 0, 24);
+    private void draw(Matrix4f model) {
+        if (instanced) {
+            putInstance(model);
+            return;
+        }
+
+        glUniformMatrix4fv(modelULoc, false, model.get(fb));
+
+        glDrawArrays(GL_QUADS, 0, CUBE_VERTEX_COUNT);
+    }
+
+    /**
+     * Instanced: draws every collected cube with one call. Otherwise only cleans up.
+     */
+    private void end(int drawn) {
+        if (!instanced) {
+            glBindBuffer(GL_ARRAY_BUFFER, 0);
+
+            glDisableVertexAttribArray(vertexLoc);
+            glDisableVertexAttribArray(colorLoc);
+
+            glUseProgram(0);
+            return;
+        }
+
+        instanceData.flip();
+
+        glUseProgram(instancedProgram);
+
+        glUniformMatrix4fv(instancedProjULoc, false, viewMatrixResource.getProjMatrix().get(fb));
+        glUniformMatrix4fv(instancedViewULoc, false, viewMatrixResource.getViewMatrix().get(fb));
+
+        glEnableVertexAttribArray(instancedVertexLoc);
+        glEnableVertexAttribArray(instancedColorLoc);
+
+        glBindBuffer(GL_ARRAY_BUFFER, buffer);
+
+        /// NOTE: `24` and `12` here are offsets in bytes
+        glVertexAttribPointer(instancedVertexLoc, 3, GL_FLOAT, false, 24, 0);
+        glVertexAttribPointer(instancedColorLoc, 3, GL_FLOAT, false, 24, 12);
+
+        glBindBuffer(GL_ARRAY_BUFFER, instanceBuffer);
+        glBufferData(GL_ARRAY_BUFFER, instanceData, GL_STREAM_DRAW);
+
+        /// NOTE: each model matrix column is a vec4 attribute: 64 bytes per instance, 16 per column
+        for (int i = 0; i < 4; ++i) {
+            glEnableVertexAttribArray(instancedModelLocs[i]);
+            glVertexAttribPointer(instancedModelLocs[i], 4, GL_FLOAT, false, 64, i * 16);
+            glVertexAttribDivisorARB(instancedModelLocs[i], 1);
+        }
+
+        glDrawArraysInstancedARB(GL_QUADS, 0, CUBE_VERTEX_COUNT, drawn);
+
+        for (int i = 0; i < 4; ++i) {
+            glVertexAttribDivisorARB(instancedModelLocs[i], 0);
+            glDisableVertexAttribArray(instancedModelLocs[i]);
         }
 
         glBindBuffer(GL_ARRAY_BUFFER, 0);
 
-        glDisableVertexAttribArray(vertexLoc);
-        glDisableVertexAttribArray(colorLoc);
+        glDisableVertexAttribArray(instancedVertexLoc);
+        glDisableVertexAttribArray(instancedColorLoc);
 
         glUseProgram(0);
     }
+
+    private void putInstance(Matrix4f matrix) {
+        if (instanceData.remaining() < 16) {
+            FloatBuffer grown = BufferUtils.createFloatBuffer(instanceData.capacity() * 2);
+            instanceData.flip();
+            grown.put(instanceData);
+            instanceData = grown;
+        }
+
+        matrix.get(instanceData.position(), instanceData);
+        instanceData.position(instanceData.position() + 16);
+    }
+
+    /**
+     * @param x bottom center of the box, like {@link Position}.
+     */
+    private static boolean isVisible(FrustumIntersection frustum, float x, float y, float z,
+                                     float width, float depth, float height) {
+        final float halfWidth = width * 0.5f;
+        final float halfDepth = depth * 0.5f;
+
+        return frustum.testAab(
+                x - halfWidth, y - halfDepth, z,
+                x + halfWidth, y + halfDepth, z + height);
+    }
+
+    /**
+     * @return model matrix of a cube, in a matrix reused between calls. Angles are in degrees.
+     */
+    private Matrix4f computeModelMatrix(float x, float y, float z,
+                                        float scaleX, float scaleY, float scaleZ,
+                                        float roll, float pitch, float yaw) {
+        return modelMatrix.identity()
+                .translate(x, y, z)
+                .scale(scaleX, scaleY, scaleZ)
+                .rotateZ((float) Math.toRadians(yaw))
+                .rotateX((float) Math.toRadians(roll))
+                .rotateY((float) Math.toRadians(pitch));
+    }
+
+    private static float lerp(float previous, float current, float alpha) {
+        return previous + (current - previous) * alpha;
+    }
+
+    private static int compileProgram(String vertexName, String fragmentName) {
+        String vertexSrc = null;
+        String fragmentSrc = null;
+
+        try {
+            vertexSrc = File.readToString(vertexName);
+            fragmentSrc = File.readToString(fragmentName);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+
+        int vertexShader = glCreateShader(GL_VERTEX_SHADER);
+        glShaderSource(vertexShader, vertexSrc);
+        glCompileShader(vertexShader);
+
+        System.out.println(glGetShaderInfoLog(vertexShader));
+
+        int fragmentShader = glCreateShader(GL_FRAGMENT_SHADER);
+        glShaderSource(fragmentShader, fragmentSrc);
+        glCompileShader(fragmentShader);
+
+        System.out.println(glGetShaderInfoLog(fragmentShader));
+
+        int program = glCreateProgram();
+        glAttachShader(program, vertexShader);
+        glAttachShader(program, fragmentShader);
+        glLinkProgram(program);
+
+        System.out.println(glGetProgramInfoLog(program));
+
+        return program;
+    }
 }
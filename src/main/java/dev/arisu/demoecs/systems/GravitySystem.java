@@ -0,0 +1,58 @@
+package dev.arisu.demoecs.systems;
+
+import com.badlogic.ashley.core.ComponentMapper;
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.EntitySystem;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.ashley.utils.ImmutableArray;
+import dev.arisu.demoecs.Access;
+import dev.arisu.demoecs.components.Velocity;
+import dev.arisu.demoecs.resources.BodiesResource;
+
+@Access(writes = {Velocity.class, BodiesResource.class})
+public class GravitySystem extends EntitySystem {
+    public static final float GRAVITY = 0.5f;
+
+    private ComponentMapper<Velocity> vm = ComponentMapper.getFor(Velocity.class);
+
+    private ImmutableArray<Entity> entities;
+
+    /// NOTE: `null` when bodies aren't used
+    private final BodiesResource bodies;
+
+    public GravitySystem() {
+        this(null);
+    }
+
+    public GravitySystem(BodiesResource bodies) {
+        this.bodies = bodies;
+    }
+
+    @Override
+    public void addedToEngine(Engine engine) {
+        entities = engine.getEntitiesFor(Family.all(Velocity.class).get());
+    }
+
+    @Override
+    public void update(float deltaTime) {
+        for (int i = 0, n = entities.size(); i < n; ++i) {
+            final Velocity velocity = vm.get(entities.get(i));
+            velocity.z = fall(velocity.z, deltaTime);
+        }
+
+        if (bodies != null) {
+            final float[] vz = bodies.vz;
+            for (int slot = 0, n = bodies.getSize(); slot < n; ++slot) {
+                vz[slot] = fall(vz[slot], deltaTime);
+            }
+        }
+    }
+
+    /**
+     * @return vertical velocity after falling for {@code deltaTime}.
+     */
+    private static float fall(float vz, float deltaTime) {
+        return vz - GRAVITY * deltaTime;
+    }
+}
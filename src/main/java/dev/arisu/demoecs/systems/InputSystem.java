@@ -6,6 +6,7 @@ import com.badlogic.ashley.core.Entity;
 import com.badlogic.ashley.core.EntitySystem;
 import com.badlogic.ashley.core.Family;
 import com.badlogic.ashley.utils.ImmutableArray;
+import dev.arisu.demoecs.Access;
 import dev.arisu.demoecs.InputState;
 import dev.arisu.demoecs.components.Flags;
 import dev.arisu.demoecs.components.PlayerTag;
@@ -14,6 +15,7 @@ import dev.arisu.demoecs.components.Velocity;
 import dev.arisu.demoecs.util.Pair;
 import java.util.concurrent.ArrayBlockingQueue;
 
+@Access(reads = {PlayerTag.class, Flags.class}, writes = {InputState.class, Rotation.class, Velocity.class})
 public class InputSystem extends EntitySystem {
 
     public static final class MouseMove extends Pair<Double, Double> {
@@ -50,12 +52,7 @@ public class InputSystem extends EntitySystem {
         final Entity player = playerEntity.first();
         final Rotation rotation = rm.get(player);
         final Flags flags = fm.get(player);
-
-        Velocity velocity = vm.get(player);
-        if (velocity == null) {
-            velocity = new Velocity();
-            player.add(velocity);
-        }
+        final Velocity velocity = vm.get(player);
 
         while (!mouseMoves.isEmpty()) {
             MouseMove mm = mouseMoves.poll();
@@ -70,6 +67,11 @@ public class InputSystem extends EntitySystem {
             }
         }
 
+        /// NOTE: not adding one here, components may only be added by systems writing the engine
+        if (velocity == null) {
+            return;
+        }
+
         float deltaX = 0.0f, deltaY = 0.0f;
 
         if (inputState.isW()) {
@@ -99,7 +101,6 @@ public class InputSystem extends EntitySystem {
         }
 
         if (flags != null && flags.isOnGround()) {
-            System.out.println("on ground");
             velocity.x *= 0.85;
             velocity.y *= 0.85;
             velocity.x += deltaX * deltaTime;
@@ -115,7 +116,5 @@ public class InputSystem extends EntitySystem {
             inputState.setSpace(false);
             velocity.z = 1.2f;
         }
-
-        velocity.z += -0.5f * deltaTime;
     }
 }
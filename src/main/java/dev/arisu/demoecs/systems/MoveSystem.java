@@ -6,18 +6,33 @@ import com.badlogic.ashley.core.Entity;
 import com.badlogic.ashley.core.EntitySystem;
 import com.badlogic.ashley.core.Family;
 import com.badlogic.ashley.utils.ImmutableArray;
+import dev.arisu.demoecs.Access;
 import dev.arisu.demoecs.components.BoundingBox;
 import dev.arisu.demoecs.components.Flags;
-import dev.arisu.demoecs.components.PlayerTag;
 import dev.arisu.demoecs.components.Position;
 import dev.arisu.demoecs.components.Velocity;
+import dev.arisu.demoecs.resources.BodiesResource;
 import dev.arisu.demoecs.terrain.Terrain;
-import dev.arisu.demoecs.util.Pair;
-import java.util.ArrayList;
-import java.util.List;
-
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Moves every entity with a {@link Velocity} and sweeps its {@link BoundingBox} against the terrain,
+ * then does the same for every body of {@link BodiesResource}, if given one.
+ * <p>
+ * Entities are only tested against the terrain, never against each other, so each of them is
+ * moved independently, in parallel once there are enough of them. Terrain must not be modified
+ * while the system updates.
+ */
+@Access(reads = {Terrain.class, BoundingBox.class},
+        writes = {Position.class, Velocity.class, Flags.class, BodiesResource.class})
 public class MoveSystem extends EntitySystem {
-    private ImmutableArray<Entity> playerEntity;
+
+    /// NOTE: below this many entities, forking costs more than moving them on the calling thread
+    private static final int PARALLEL_THRESHOLD = 256;
+
+    private ImmutableArray<Entity> entities;
 
     private ComponentMapper<Position> pm = ComponentMapper.getFor(Position.class);
     private ComponentMapper<BoundingBox> bbm = ComponentMapper.getFor(BoundingBox.class);
@@ -26,14 +41,45 @@ public class MoveSystem extends EntitySystem {
 
     private final Terrain terrain;
 
+    /// NOTE: `null` when bodies aren't used
+    private final BodiesResource bodies;
+
+    /// NOTE: `null` when running single-threaded
+    private final ForkJoinPool pool;
+
+    /// NOTE: created by this system rather than shared with others
+    private final boolean ownsPool;
+
+    private final ThreadLocal<Sweep> sweeps = ThreadLocal.withInitial(Sweep::new);
+
     public MoveSystem(Terrain terrain) {
+        this(terrain, null, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param threads threads of a pool of its own, single-threaded if 1.
+     */
+    public MoveSystem(Terrain terrain, int threads) {
+        this(terrain, null, threads > 1 ? new ForkJoinPool(threads) : null, true);
+    }
+
+    /**
+     * @param pool shared pool the entities are moved on, single-threaded if {@code null}.
+     */
+    public MoveSystem(Terrain terrain, BodiesResource bodies, ForkJoinPool pool) {
+        this(terrain, bodies, pool, false);
+    }
+
+    private MoveSystem(Terrain terrain, BodiesResource bodies, ForkJoinPool pool, boolean ownsPool) {
         this.terrain = terrain;
+        this.bodies = bodies;
+        this.pool = pool;
+        this.ownsPool = ownsPool;
     }
 
     @Override
     public void addedToEngine(Engine engine) {
-        playerEntity = engine.getEntitiesFor(Family.all(
-                PlayerTag.class,
+        entities = engine.getEntitiesFor(Family.all(
                 Position.class,
                 Velocity.class,
                 BoundingBox.class
@@ -41,53 +87,120 @@ public class MoveSystem extends EntitySystem {
     }
 
     @Override
-    public void update(float deltaTime) {
-        final Entity player = playerEntity.first();
+    public void removedFromEngine(Engine engine) {
+        if (ownsPool && pool != null) {
+            pool.shutdown();
+        }
+    }
 
-        final Position position = pm.get(player);
-        final BoundingBox boundingBox = bbm.get(player);
-        final Velocity velocity = vm.get(player);
+    @Override
+    public void update(float deltaTime) {
+        forEach(entities.size(), i -> move(entities.get(i), deltaTime));
 
-        Flags flags = fm.get(player);
-        if (flags == null) {
-            flags = new Flags();
-            player.add(flags);
+        if (bodies != null) {
+            forEach(bodies.getSize(), slot -> move(bodies, slot, deltaTime));
         }
+    }
 
-        float deltaX = velocity.x * deltaTime,
-                deltaY = velocity.y * deltaTime,
-                deltaZ = velocity.z * deltaTime;
+    /**
+     * Runs {@code action} for every index below {@code count}, in parallel once there are enough of them.
+     */
+    private void forEach(int count, IntConsumer action) {
+        if (pool == null || count < PARALLEL_THRESHOLD) {
+            for (int i = 0; i < count; ++i) {
+                action.accept(i);
+            }
+        } else {
+            // parallel stream submitted from inside the pool runs on the pool's workers
+            pool.submit(() -> IntStream.range(0, count)
+                    .parallel()
+                    .forEach(action))
+                    .join();
+        }
+    }
 
-        if (Math.abs(deltaZ) >= 0.0000001f) {
-            flags.setOnGround(false);
+    /**
+     * Must not touch anything but the components of {@code entity}, as it runs concurrently
+     * for different entities. In particular, components can't be added here.
+     */
+    private void move(Entity entity, float deltaTime) {
+        final Position position = pm.get(entity);
+        final BoundingBox boundingBox = bbm.get(entity);
+        final Velocity velocity = vm.get(entity);
+        final Flags flags = fm.get(entity);
+        final Sweep sweep = sweeps.get();
+
+        sweep.x = position.x;
+        sweep.y = position.y;
+        sweep.z = position.z;
+        sweep.vx = velocity.x;
+        sweep.vy = velocity.y;
+        sweep.vz = velocity.z;
+        sweep.onGround = flags != null && flags.isOnGround();
+
+        move(sweep, boundingBox.width, boundingBox.depth, boundingBox.height, deltaTime);
+
+        position.x = sweep.x;
+        position.y = sweep.y;
+        position.z = sweep.z;
+        velocity.x = sweep.vx;
+        velocity.y = sweep.vy;
+        velocity.z = sweep.vz;
+        if (flags != null) {
+            flags.setOnGround(sweep.onGround);
         }
+    }
 
-        final List<AABB> crossedCubes = sweepBroadPhase(new AABB(boundingBox, position), deltaX, deltaY, deltaZ);
+    /**
+     * Same as {@link #move(Entity, float)}, for a body in the columns of {@link BodiesResource}.
+     */
+    private void move(BodiesResource bodies, int slot, float deltaTime) {
+        final Sweep sweep = sweeps.get();
+
+        sweep.x = bodies.x[slot];
+        sweep.y = bodies.y[slot];
+        sweep.z = bodies.z[slot];
+        sweep.vx = bodies.vx[slot];
+        sweep.vy = bodies.vy[slot];
+        sweep.vz = bodies.vz[slot];
+        sweep.onGround = bodies.onGround[slot];
+
+        move(sweep, bodies.width[slot], bodies.depth[slot], bodies.height[slot], deltaTime);
+
+        bodies.x[slot] = sweep.x;
+        bodies.y[slot] = sweep.y;
+        bodies.z[slot] = sweep.z;
+        bodies.vx[slot] = sweep.vx;
+        bodies.vy[slot] = sweep.vy;
+        bodies.vz[slot] = sweep.vz;
+        bodies.onGround[slot] = sweep.onGround;
+    }
 
-        // for three planes
-        for (int plane = 0; plane < 3; ++plane) {
-            final AABB playerAABB = new AABB(boundingBox, position);
+    /**
+     * Moves the body loaded into {@code sweep} by its velocity, sliding along the terrain.
+     */
+    private void move(Sweep sweep, float width, float depth, float height, float deltaTime) {
+        final float halfWidth = width * 0.5f;
+        final float halfDepth = depth * 0.5f;
+        final float halfHeight = height * 0.5f;
 
-            float nearestTime = 1.0f;
-            Normal nearestNormal = null;
+        float deltaX = sweep.vx * deltaTime,
+                deltaY = sweep.vy * deltaTime,
+                deltaZ = sweep.vz * deltaTime;
 
-            for (AABB crossedCubeAABB : crossedCubes) {
-                final Pair<Float, Normal> sweep = sweepTestAABB(
-                        crossedCubeAABB, playerAABB,
-                        position.x, position.y, position.z + playerAABB.getHalfHeight(),
-                        deltaX, deltaY, deltaZ);
+        if (Math.abs(deltaZ) >= 0.0000001f) {
+            sweep.onGround = false;
+        }
 
-                if (sweep == null) {
-                    continue;
-                }
+        // for three planes
+        for (int plane = 0; plane < 3; ++plane) {
+            sweepTerrain(sweep,
+                    halfWidth, halfDepth, halfHeight,
+                    sweep.x, sweep.y, sweep.z + halfHeight,
+                    deltaX, deltaY, deltaZ);
 
-                if (sweep.getA() < nearestTime) {
-                    assert sweep.getA() == 1.0f || sweep.getB() != null;
-
-                    nearestTime = sweep.getA();
-                    nearestNormal = sweep.getB();
-                }
-            }
+            final float nearestTime = sweep.nearestTime;
+            final Normal nearestNormal = sweep.nearestNormal;
 
             float applyX = deltaX * nearestTime;
             float applyY = deltaY * nearestTime;
@@ -99,9 +212,9 @@ public class MoveSystem extends EntitySystem {
                 applyZ += nearestNormal.z * 0.0005;
             }
 
-            position.x += applyX;
-            position.y += applyY;
-            position.z += applyZ;
+            sweep.x += applyX;
+            sweep.y += applyY;
+            sweep.z += applyZ;
 
             deltaX -= applyX;
             deltaY -= applyY;
@@ -109,44 +222,61 @@ public class MoveSystem extends EntitySystem {
 
             if (nearestNormal == Normal.WEST && deltaX > 0.0f) {
                 deltaX = 0.0f;
-                velocity.x = 0.0f;
+                sweep.vx = 0.0f;
             } else if (nearestNormal == Normal.EAST && deltaX < 0.0f) {
                 deltaX = 0.0f;
-                velocity.x = 0.0f;
+                sweep.vx = 0.0f;
             } else if (nearestNormal == Normal.SOUTH && deltaY > 0.0f) {
                 deltaY = 0.0f;
-                velocity.y = 0.0f;
+                sweep.vy = 0.0f;
             } else if (nearestNormal == Normal.NORTH && deltaY < 0.0f) {
                 deltaY = 0.0f;
-                velocity.y = 0.0f;
+                sweep.vy = 0.0f;
             } else if (nearestNormal == Normal.DOWN && deltaZ > 0.0f) {
                 deltaZ = 0.0f;
-                velocity.z = 0.0f;
+                sweep.vz = 0.0f;
             } else if (nearestNormal == Normal.UP && deltaZ < 0.0f) {
                 deltaZ = 0.0f;
-                velocity.z = 0.0f;
-                flags.setOnGround(true);
+                sweep.vz = 0.0f;
+                sweep.onGround = true;
+            }
+
+            // nothing left to slide along, the remaining planes would find no hits
+            if (nearestNormal == null || isZero(deltaX, deltaY, deltaZ)) {
+                break;
             }
         }
     }
 
+    private static boolean isZero(float dx, float dy, float dz) {
+        final float EPS = 0.0000001f;
+        return Math.abs(dx) < EPS && Math.abs(dy) < EPS && Math.abs(dz) < EPS;
+    }
+
     /**
-     * Find collision of dynamic AABB against static AABB by solving series of velocity equation for t:
+     * Find collision of a moving box against a unit cube by solving series of velocity equation for t:
      * <pre>t = (x - x<sub>0</sub>) / dx</pre>
      *
-     * @param fixed   {@link AABB} that isn't moving.
-     * @param dynamic {@link AABB} that is moving.
-     * @param ox      Origin of velocity vector.
-     * @param oy      Origin of velocity vector.
-     * @param oz      Origin of velocity vector.
-     * @param dx      Velocity vector.
-     * @param dy      Velocity vector.
-     * @param dz      Velocity vector.
-     * @return {@link Pair}
+     * @param result     receives time and normal of the collision, if any.
+     * @param cx         Minimum corner of the cube.
+     * @param cy         Minimum corner of the cube.
+     * @param cz         Minimum corner of the cube.
+     * @param halfWidth  Half extents of the moving box.
+     * @param halfDepth  Half extents of the moving box.
+     * @param halfHeight Half extents of the moving box.
+     * @param ox         Origin of velocity vector, center of the moving box.
+     * @param oy         Origin of velocity vector, center of the moving box.
+     * @param oz         Origin of velocity vector, center of the moving box.
+     * @param dx         Velocity vector.
+     * @param dy         Velocity vector.
+     * @param dz         Velocity vector.
+     * @return whether the box hits the cube before the end of the vector.
      */
-    private static Pair<Float, Normal> sweepTestAABB(AABB fixed, AABB dynamic,
-                                                     float ox, float oy, float oz,
-                                                     float dx, float dy, float dz) {
+    private static boolean sweepTestCube(Sweep result,
+                                         int cx, int cy, int cz,
+                                         float halfWidth, float halfDepth, float halfHeight,
+                                         float ox, float oy, float oz,
+                                         float dx, float dy, float dz) {
         final float EPS = 0.0000001f;
 
         final boolean hasX = Math.abs(dx) >= EPS;
@@ -155,12 +285,12 @@ public class MoveSystem extends EntitySystem {
 
         // плоскости наибольшего приближения по каждой из осей в обоих направлениях
         // всегда валидные значения float
-        final float xmin = fixed.minX - dynamic.getHalfWidth();
-        final float xmax = fixed.maxX + dynamic.getHalfWidth();
-        final float ymin = fixed.minY - dynamic.getHalfDepth();
-        final float ymax = fixed.maxY + dynamic.getHalfDepth();
-        final float zmin = fixed.minZ - dynamic.getHalfHeight();
-        final float zmax = fixed.maxZ + dynamic.getHalfHeight();
+        final float xmin = cx - halfWidth;
+        final float xmax = cx + 1 + halfWidth;
+        final float ymin = cy - halfDepth;
+        final float ymax = cy + 1 + halfDepth;
+        final float zmin = cz - halfHeight;
+        final float zmax = cz + 1 + halfHeight;
 
         // решение уравнения t = (x - x0) / dx для каждой из пересекаемых прямой плоскостей
         // могут принимать значения +Inf, -Inf, NaN в зависимости от параметров
@@ -184,107 +314,272 @@ public class MoveSystem extends EntitySystem {
 
         if (hasX && hasY && hasZ) {
             if (txmin > tymax || txmax < tymin)
-                return null;
+                return false;
 
             float tmin = Math.max(txmin, tymin);
             float tmax = Math.min(txmax, tymax);
             Normal normal = (txmin > tymin) ? normalx : normaly;
 
             if (tmin > tzmax || tmax < tzmin)
-                return null;
+                return false;
 
             normal = (tmin > tzmin) ? normal : normalz;
             tmin = Math.max(tmin, tzmin);
             tmax = Math.min(tmax, tzmax);
 
             if (tmin >= 1.0f || tmax <= 0.0f)
-                return null;
+                return false;
 
-            return new Pair<>(clamp(tmin), normal);
+            return result.hit(clamp(tmin), normal);
 
         } else if (hasX && hasY) {
-            if (oz >= zmax || oz <= zmin) return null;
-            if (txmin > tymax || txmax < tymin) return null;
+            if (oz >= zmax || oz <= zmin) return false;
+            if (txmin > tymax || txmax < tymin) return false;
 
             float tmin = Math.max(txmin, tymin);
             float tmax = Math.min(txmax, tymax);
             Normal normal = (txmin > tymin) ? normalx : normaly;
 
-            if (tmin >= 1.0f || tmax <= 0.0f) return null;
-            return new Pair<>(clamp(tmin), normal);
+            if (tmin >= 1.0f || tmax <= 0.0f) return false;
+            return result.hit(clamp(tmin), normal);
 
         } else if (hasX && hasZ) {
-            if (oy >= ymax || oy <= ymin) return null;
-            if (txmin > tzmax || txmax < tzmin) return null;
+            if (oy >= ymax || oy <= ymin) return false;
+            if (txmin > tzmax || txmax < tzmin) return false;
 
             float tmin = Math.max(txmin, tzmin);
             float tmax = Math.min(txmax, tzmax);
             Normal normal = (txmin > tzmin) ? normalx : normalz;
 
-            if (tmin >= 1.0f || tmax <= 0.0f) return null;
-            return new Pair<>(clamp(tmin), normal);
+            if (tmin >= 1.0f || tmax <= 0.0f) return false;
+            return result.hit(clamp(tmin), normal);
 
         } else if (hasY && hasZ) {
-            if (ox >= xmax || ox <= xmin) return null;
-            if (tymin > tzmax || tymax < tzmin) return null;
+            if (ox >= xmax || ox <= xmin) return false;
+            if (tymin > tzmax || tymax < tzmin) return false;
 
             float tmin = Math.max(tymin, tzmin);
             float tmax = Math.min(tymax, tzmax);
             Normal normal = (tymin > tzmin) ? normaly : normalz;
 
-            if (tmin >= 1.0f || tmax <= 0.0f) return null;
-            return new Pair<>(clamp(tmin), normal);
+            if (tmin >= 1.0f || tmax <= 0.0f) return false;
+            return result.hit(clamp(tmin), normal);
 
         } else if (hasX) {
-            if (oy >= ymax || oy <= ymin) return null;
-            if (oz >= zmax || oz <= zmin) return null;
-            if (txmin >= 1.0f | txmax <= 0.0f) return null;
-            return new Pair<>(clamp(txmin), normalx);
+            if (oy >= ymax || oy <= ymin) return false;
+            if (oz >= zmax || oz <= zmin) return false;
+            if (txmin >= 1.0f | txmax <= 0.0f) return false;
+            return result.hit(clamp(txmin), normalx);
 
         } else if (hasY) {
-            if (ox >= xmax || ox <= xmin) return null;
-            if (oz >= zmax || oz <= zmin) return null;
-            if (tymin >= 1.0f | tymax <= 0.0f) return null;
-            return new Pair<>(clamp(tymin), normaly);
+            if (ox >= xmax || ox <= xmin) return false;
+            if (oz >= zmax || oz <= zmin) return false;
+            if (tymin >= 1.0f | tymax <= 0.0f) return false;
+            return result.hit(clamp(tymin), normaly);
 
         } else if (hasZ) {
-            if (ox >= xmax || ox <= xmin) return null;
-            if (oy >= ymax || oy <= ymin) return null;
-            if (tzmin >= 1.0f | tzmax <= 0.0f) return null;
-            return new Pair<>(clamp(tzmin), normalz);
+            if (ox >= xmax || ox <= xmin) return false;
+            if (oy >= ymax || oy <= ymin) return false;
+            if (tzmin >= 1.0f | tzmax <= 0.0f) return false;
+            return result.hit(clamp(tzmin), normalz);
         }
 
-        return null;
+        return false;
     }
 
-    private List<AABB> sweepBroadPhase(AABB movingAABB, float dx, float dy, float dz) {
-        final AABB aabb = movingAABB.expand(dx, dy, dz);
-
-        // TODO: convert it to AABB too
-        // TODO: replace with something cheaper than Math.floor()
-        int
-                minX = (int) Math.floor(aabb.minX),
-                minY = (int) Math.floor(aabb.minY),
-                minZ = (int) Math.floor(aabb.minZ),
-                maxX = (int) aabb.maxX,
-                maxY = (int) aabb.maxY,
-                maxZ = (int) aabb.maxZ;
-
-        final ArrayList<AABB> boundingBoxes = new ArrayList<>();
-
-        for (int z = minZ; z <= maxZ; ++z) {
-            for (int y = minY; y <= maxY; ++y) {
-                for (int x = minX; x <= maxX; ++x) {
-                    if (terrain.hasBlock(x, y, z)) {
-                        boundingBoxes.add(new AABB(x, y, z, x + 1, y + 1, z + 1));
+    /**
+     * Finds the nearest solid cube hit by the box moving along the vector, leaving the hit time
+     * and normal in {@code sweep.nearestTime} and {@code sweep.nearestNormal}.
+     * <p>
+     * Rather than testing every cube of the box expanded by the vector, walks only the cells
+     * the box passes through, in order of entry time: Amanatides &amp; Woo voxel traversal
+     * generalised to boxes. The box covers a range of cells along each axis. Its leading face
+     * enters a new layer of cells and its trailing face leaves one at regular intervals, and
+     * whenever a layer is entered, the cells of that layer within the current ranges of the other
+     * two axes are tested. Cells of a layer can't be hit before the layer is entered, so the walk
+     * stops at the first layer entered no earlier than the nearest hit so far.
+     *
+     * @param halfWidth  Half extents of the moving box.
+     * @param halfDepth  Half extents of the moving box.
+     * @param halfHeight Half extents of the moving box.
+     * @param ox         Origin of velocity vector, center of the moving box.
+     * @param oy         Origin of velocity vector, center of the moving box.
+     * @param oz         Origin of velocity vector, center of the moving box.
+     * @param dx         Velocity vector.
+     * @param dy         Velocity vector.
+     * @param dz         Velocity vector.
+     */
+    private void sweepTerrain(Sweep sweep,
+                              float halfWidth, float halfDepth, float halfHeight,
+                              float ox, float oy, float oz,
+                              float dx, float dy, float dz) {
+        final float[] min = sweep.min, max = sweep.max, d = sweep.d;
+        final float[] enter = sweep.enter, leave = sweep.leave;
+        final int[] lo = sweep.lo, hi = sweep.hi;
+
+        min[0] = ox - halfWidth;
+        max[0] = ox + halfWidth;
+        min[1] = oy - halfDepth;
+        max[1] = oy + halfDepth;
+        min[2] = oz - halfHeight;
+        max[2] = oz + halfHeight;
+        d[0] = dx;
+        d[1] = dy;
+        d[2] = dz;
+
+        for (int axis = 0; axis < 3; ++axis) {
+            lo[axis] = floor(min[axis]);
+            hi[axis] = floor(max[axis]);
+            updateEvents(sweep, axis);
+        }
+
+        sweep.nearestTime = 1.0f;
+        sweep.nearestNormal = null;
+
+        // cells the box is in at the start
+        testCells(sweep, lo[0], lo[1], lo[2], hi[0], hi[1], hi[2],
+                halfWidth, halfDepth, halfHeight, ox, oy, oz, dx, dy, dz);
+
+        while (true) {
+            int enterAxis = 0, leaveAxis = 0;
+            for (int axis = 1; axis < 3; ++axis) {
+                if (enter[axis] < enter[enterAxis]) {
+                    enterAxis = axis;
+                }
+                if (leave[axis] < leave[leaveAxis]) {
+                    leaveAxis = axis;
+                }
+            }
+
+            // on ties, enter first, so that no cell is left out of a layer
+            if (leave[leaveAxis] < enter[enterAxis]) {
+                if (d[leaveAxis] > 0.0f) {
+                    lo[leaveAxis]++;
+                } else {
+                    hi[leaveAxis]--;
+                }
+                updateEvents(sweep, leaveAxis);
+                continue;
+            }
+
+            if (enter[enterAxis] >= sweep.nearestTime) {
+                break;
+            }
+
+            final int layer;
+            if (d[enterAxis] > 0.0f) {
+                layer = ++hi[enterAxis];
+            } else {
+                layer = --lo[enterAxis];
+            }
+            updateEvents(sweep, enterAxis);
+
+            switch (enterAxis) {
+                case 0:
+                    testCells(sweep, layer, lo[1], lo[2], layer, hi[1], hi[2],
+                            halfWidth, halfDepth, halfHeight, ox, oy, oz, dx, dy, dz);
+                    break;
+                case 1:
+                    testCells(sweep, lo[0], layer, lo[2], hi[0], layer, hi[2],
+                            halfWidth, halfDepth, halfHeight, ox, oy, oz, dx, dy, dz);
+                    break;
+                default:
+                    testCells(sweep, lo[0], lo[1], layer, hi[0], hi[1], layer,
+                            halfWidth, halfDepth, halfHeight, ox, oy, oz, dx, dy, dz);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Computes when the box enters the next layer of cells along the axis and when it leaves
+     * the trailing one, as fractions of the velocity vector.
+     */
+    private static void updateEvents(Sweep sweep, int axis) {
+        final float d = sweep.d[axis];
+
+        if (Math.abs(d) < 0.0000001f) {
+            sweep.enter[axis] = Float.POSITIVE_INFINITY;
+            sweep.leave[axis] = Float.POSITIVE_INFINITY;
+        } else if (d > 0.0f) {
+            sweep.enter[axis] = (sweep.hi[axis] + 1 - sweep.max[axis]) / d;
+            sweep.leave[axis] = (sweep.lo[axis] + 1 - sweep.min[axis]) / d;
+        } else {
+            sweep.enter[axis] = (sweep.lo[axis] - sweep.min[axis]) / d;
+            sweep.leave[axis] = (sweep.hi[axis] - sweep.max[axis]) / d;
+        }
+    }
+
+    private void testCells(Sweep sweep,
+                           int fromX, int fromY, int fromZ,
+                           int toX, int toY, int toZ,
+                           float halfWidth, float halfDepth, float halfHeight,
+                           float ox, float oy, float oz,
+                           float dx, float dy, float dz) {
+        for (int z = fromZ; z <= toZ; ++z) {
+            for (int y = fromY; y <= toY; ++y) {
+                for (int x = fromX; x <= toX; ++x) {
+                    if (!terrain.hasBlock(x, y, z)) {
+                        continue;
+                    }
+
+                    final boolean hit = sweepTestCube(sweep, x, y, z,
+                            halfWidth, halfDepth, halfHeight,
+                            ox, oy, oz, dx, dy, dz);
+
+                    if (hit && sweep.time < sweep.nearestTime) {
+                        assert sweep.time == 1.0f || sweep.normal != null;
+
+                        sweep.nearestTime = sweep.time;
+                        sweep.nearestNormal = sweep.normal;
                     }
                 }
             }
         }
-        return boundingBoxes;
+    }
+
+    /**
+     * Cheaper {@link Math#floor} for values well within the {@code int} range.
+     */
+    static int floor(float value) {
+        final int truncated = (int) value;
+        return value < truncated ? truncated - 1 : truncated;
     }
 
     private static float clamp(float val) {
         return Math.max(0.0f, Math.min(1.0f, val));
     }
+
+    /**
+     * Scratch state of a single thread moving entities, so that moving doesn't allocate.
+     */
+    private static final class Sweep {
+        /// NOTE: body being moved
+        private float x, y, z;
+        private float vx, vy, vz;
+        private boolean onGround;
+
+        /// NOTE: state of the traversal, indexed by axis
+        private final float[] min = new float[3];
+        private final float[] max = new float[3];
+        private final float[] d = new float[3];
+        private final int[] lo = new int[3];
+        private final int[] hi = new int[3];
+        private final float[] enter = new float[3];
+        private final float[] leave = new float[3];
+
+        /// NOTE: result of the last successful `sweepTestCube`
+        private float time;
+        private Normal normal;
+
+        /// NOTE: nearest hit found by `sweepTerrain`
+        private float nearestTime;
+        private Normal nearestNormal;
+
+        private boolean hit(float time, Normal normal) {
+            this.time = time;
+            this.normal = normal;
+            return true;
+        }
+    }
 }
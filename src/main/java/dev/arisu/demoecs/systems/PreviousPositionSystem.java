@@ -0,0 +1,58 @@
+package dev.arisu.demoecs.systems;
+
+import com.badlogic.ashley.core.ComponentMapper;
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.EntitySystem;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.ashley.utils.ImmutableArray;
+import dev.arisu.demoecs.Access;
+import dev.arisu.demoecs.components.Position;
+import dev.arisu.demoecs.components.PreviousPosition;
+import dev.arisu.demoecs.resources.BodiesResource;
+
+/**
+ * Remembers positions at the start of every tick, must run before any system moving entities.
+ */
+@Access(reads = Position.class, writes = {PreviousPosition.class, BodiesResource.class})
+public class PreviousPositionSystem extends EntitySystem {
+    private ComponentMapper<Position> pm = ComponentMapper.getFor(Position.class);
+    private ComponentMapper<PreviousPosition> ppm = ComponentMapper.getFor(PreviousPosition.class);
+
+    private ImmutableArray<Entity> entities;
+
+    /// NOTE: `null` when bodies aren't used
+    private final BodiesResource bodies;
+
+    public PreviousPositionSystem() {
+        this(null);
+    }
+
+    public PreviousPositionSystem(BodiesResource bodies) {
+        this.bodies = bodies;
+    }
+
+    @Override
+    public void addedToEngine(Engine engine) {
+        entities = engine.getEntitiesFor(Family.all(Position.class, PreviousPosition.class).get());
+    }
+
+    @Override
+    public void update(float deltaTime) {
+        for (Entity entity : entities) {
+            final Position position = pm.get(entity);
+            final PreviousPosition previous = ppm.get(entity);
+
+            previous.x = position.x;
+            previous.y = position.y;
+            previous.z = position.z;
+        }
+
+        if (bodies != null) {
+            final int size = bodies.getSize();
+            System.arraycopy(bodies.x, 0, bodies.prevX, 0, size);
+            System.arraycopy(bodies.y, 0, bodies.prevY, 0, size);
+            System.arraycopy(bodies.z, 0, bodies.prevZ, 0, size);
+        }
+    }
+}
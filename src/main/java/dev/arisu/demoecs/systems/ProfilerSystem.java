@@ -0,0 +1,39 @@
+package dev.arisu.demoecs.systems;
+
+import com.badlogic.ashley.core.EntitySystem;
+import dev.arisu.demoecs.Access;
+import dev.arisu.demoecs.Profiler;
+import dev.arisu.demoecs.resources.RenderStatsResource;
+import dev.arisu.demoecs.util.Histogram;
+
+/**
+ * Records counters of {@link RenderStatsResource} into the {@link Profiler} once per frame,
+ * must be added after the render systems filling them.
+ */
+@Access(reads = RenderStatsResource.class, writes = Profiler.class)
+public class ProfilerSystem extends EntitySystem {
+    private final Profiler profiler;
+    private final RenderStatsResource renderStatsResource;
+
+    private final Histogram chunksMeshed;
+    private final Histogram drawCalls;
+    private final Histogram verticesSubmitted;
+
+    public ProfilerSystem(Profiler profiler, RenderStatsResource renderStatsResource) {
+        this.profiler = profiler;
+        this.renderStatsResource = renderStatsResource;
+        this.chunksMeshed = profiler.count("chunks meshed");
+        this.drawCalls = profiler.count("draw calls");
+        this.verticesSubmitted = profiler.count("vertices submitted");
+    }
+
+    @Override
+    public void update(float deltaTime) {
+        if (!profiler.isEnabled()) {
+            return;
+        }
+        chunksMeshed.record(renderStatsResource.getChunksMeshed());
+        drawCalls.record(renderStatsResource.getDrawCalls());
+        verticesSubmitted.record(renderStatsResource.getVerticesSubmitted());
+    }
+}
@@ -0,0 +1,215 @@
+package dev.arisu.demoecs.systems;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid of cubic cells hashed by cell coordinates, for finding overlapping boxes
+ * without testing every pair.
+ * <p>
+ * Boxes are added with sequential ids and linked into every cell they overlap, so boxes
+ * larger than a cell still work, only slower. Meant to be cleared and refilled every tick:
+ * all storage is reused, nothing is allocated once the arrays have grown large enough.
+ */
+final class SpatialHash {
+
+    interface PairConsumer {
+        void accept(int a, int b);
+    }
+
+    private static final int KEY_BITS = 21;
+    private static final long KEY_MASK = (1L << KEY_BITS) - 1;
+
+    private final float invCellSize;
+
+    /// NOTE: bounds of added boxes by id: minX, minY, minZ, maxX, maxY, maxZ
+    private float[] bounds = new float[6 * 64];
+    private int boxCount;
+
+    /// NOTE: open-addressing table of cells, each holding the head of a linked list of entries
+    private long[] cellKeys;
+    private int[] cellHeads;
+    private int[] cellCoords;
+    private int cellMask;
+    private int cellShift;
+
+    /// NOTE: occupied table slots in order of creation, for clearing and iteration
+    private int[] usedSlots;
+    private int usedCount;
+
+    private int[] entryBox = new int[256];
+    private int[] entryNext = new int[256];
+    private int entryCount;
+
+    SpatialHash(float cellSize) {
+        this.invCellSize = 1.0f / cellSize;
+        allocateCells(256);
+    }
+
+    void clear() {
+        for (int i = 0; i < usedCount; ++i) {
+            cellHeads[usedSlots[i]] = -1;
+        }
+        usedCount = 0;
+        entryCount = 0;
+        boxCount = 0;
+    }
+
+    int size() {
+        return boxCount;
+    }
+
+    /**
+     * @return id of the box, ids start from 0 after every {@link #clear()}.
+     */
+    int add(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        final int id = boxCount++;
+        if (id * 6 == bounds.length) {
+            bounds = Arrays.copyOf(bounds, bounds.length * 2);
+        }
+        bounds[id * 6] = minX;
+        bounds[id * 6 + 1] = minY;
+        bounds[id * 6 + 2] = minZ;
+        bounds[id * 6 + 3] = maxX;
+        bounds[id * 6 + 4] = maxY;
+        bounds[id * 6 + 5] = maxZ;
+
+        final int fromX = cell(minX), fromY = cell(minY), fromZ = cell(minZ);
+        final int toX = cell(maxX), toY = cell(maxY), toZ = cell(maxZ);
+
+        for (int z = fromZ; z <= toZ; ++z) {
+            for (int y = fromY; y <= toY; ++y) {
+                for (int x = fromX; x <= toX; ++x) {
+                    link(id, x, y, z);
+                }
+            }
+        }
+        return id;
+    }
+
+    float getMin(int id, int axis) {
+        return bounds[id * 6 + axis];
+    }
+
+    float getMax(int id, int axis) {
+        return bounds[id * 6 + 3 + axis];
+    }
+
+    /**
+     * Calls {@code consumer} once for every pair of boxes with overlapping interiors,
+     * with the smaller id first.
+     */
+    void forEachOverlap(PairConsumer consumer) {
+        final float[] bounds = this.bounds;
+
+        for (int u = 0; u < usedCount; ++u) {
+            final int slot = usedSlots[u];
+            final int cx = cellCoords[slot * 3], cy = cellCoords[slot * 3 + 1], cz = cellCoords[slot * 3 + 2];
+
+            for (int e = cellHeads[slot]; e != -1; e = entryNext[e]) {
+                final int a = entryBox[e];
+                final int ia = a * 6;
+
+                for (int f = entryNext[e]; f != -1; f = entryNext[f]) {
+                    final int b = entryBox[f];
+                    final int ib = b * 6;
+
+                    final float minX = Math.max(bounds[ia], bounds[ib]);
+                    final float minY = Math.max(bounds[ia + 1], bounds[ib + 1]);
+                    final float minZ = Math.max(bounds[ia + 2], bounds[ib + 2]);
+
+                    if (minX >= Math.min(bounds[ia + 3], bounds[ib + 3])
+                            || minY >= Math.min(bounds[ia + 4], bounds[ib + 4])
+                            || minZ >= Math.min(bounds[ia + 5], bounds[ib + 5])) {
+                        continue;
+                    }
+
+                    // both boxes share every cell of their overlap, report the pair only from
+                    // the cell holding the overlap's minimum corner
+                    if (cell(minX) != cx || cell(minY) != cy || cell(minZ) != cz) {
+                        continue;
+                    }
+
+                    if (a < b) {
+                        consumer.accept(a, b);
+                    } else {
+                        consumer.accept(b, a);
+                    }
+                }
+            }
+        }
+    }
+
+    private int cell(float value) {
+        return MoveSystem.floor(value * invCellSize);
+    }
+
+    private void link(int box, int x, int y, int z) {
+        final long key = ((x & KEY_MASK) << (2 * KEY_BITS)) | ((y & KEY_MASK) << KEY_BITS) | (z & KEY_MASK);
+
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> cellShift);
+        while (cellHeads[slot] != -1 && cellKeys[slot] != key) {
+            slot = (slot + 1) & cellMask;
+        }
+
+        if (cellHeads[slot] == -1) {
+            if (usedCount + 1 > (cellMask + 1) / 2) {
+                growCells();
+                link(box, x, y, z);
+                return;
+            }
+            cellKeys[slot] = key;
+            cellCoords[slot * 3] = x;
+            cellCoords[slot * 3 + 1] = y;
+            cellCoords[slot * 3 + 2] = z;
+            usedSlots[usedCount++] = slot;
+        }
+
+        if (entryCount == entryBox.length) {
+            entryBox = Arrays.copyOf(entryBox, entryCount * 2);
+            entryNext = Arrays.copyOf(entryNext, entryCount * 2);
+        }
+        entryBox[entryCount] = box;
+        entryNext[entryCount] = cellHeads[slot];
+        cellHeads[slot] = entryCount++;
+    }
+
+    private void allocateCells(int capacity) {
+        cellKeys = new long[capacity];
+        cellHeads = new int[capacity];
+        cellCoords = new int[capacity * 3];
+        usedSlots = new int[capacity / 2 + 1];
+        cellMask = capacity - 1;
+        cellShift = Long.numberOfLeadingZeros(cellMask);
+        Arrays.fill(cellHeads, -1);
+    }
+
+    /**
+     * Doubles the cell table, moving every occupied cell with its entry list.
+     */
+    private void growCells() {
+        final long[] oldKeys = cellKeys;
+        final int[] oldHeads = cellHeads;
+        final int[] oldCoords = cellCoords;
+        final int[] oldUsed = usedSlots;
+        final int oldUsedCount = usedCount;
+
+        allocateCells((cellMask + 1) * 2);
+        usedCount = 0;
+
+        for (int u = 0; u < oldUsedCount; ++u) {
+            final int old = oldUsed[u];
+            final long key = oldKeys[old];
+
+            int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> cellShift);
+            while (cellHeads[slot] != -1) {
+                slot = (slot + 1) & cellMask;
+            }
+            cellKeys[slot] = key;
+            cellHeads[slot] = oldHeads[old];
+            cellCoords[slot * 3] = oldCoords[old * 3];
+            cellCoords[slot * 3 + 1] = oldCoords[old * 3 + 1];
+            cellCoords[slot * 3 + 2] = oldCoords[old * 3 + 2];
+            usedSlots[usedCount++] = slot;
+        }
+    }
+}
@@ -1,22 +1,40 @@
 package dev.arisu.demoecs.systems;
 
+import com.badlogic.ashley.core.ComponentMapper;
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
 import com.badlogic.ashley.core.EntitySystem;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.ashley.utils.ImmutableArray;
+import dev.arisu.demoecs.Access;
+import dev.arisu.demoecs.components.PlayerTag;
+import dev.arisu.demoecs.components.Position;
+import dev.arisu.demoecs.resources.RenderStatsResource;
 import dev.arisu.demoecs.resources.ViewMatrixResource;
 import dev.arisu.demoecs.terrain.Terrain;
+import dev.arisu.demoecs.terrain.TerrainListener;
+import dev.arisu.demoecs.terrain.mesh.ChunkMesh;
+import dev.arisu.demoecs.terrain.mesh.ChunkMeshPipeline;
+import dev.arisu.demoecs.terrain.mesh.ChunkMesher;
+import dev.arisu.demoecs.terrain.mesh.MeshingMode;
+import dev.arisu.demoecs.terrain.mesh.OcclusionCuller;
 import dev.arisu.demoecs.util.File;
-import dev.arisu.demoecs.util.Pair;
+import dev.arisu.demoecs.util.LongMap;
 import java.io.IOException;
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
-import org.joml.Matrix4f;
+import java.util.Comparator;
+import lombok.Getter;
+import org.joml.FrustumIntersection;
+import org.joml.Vector3f;
 import org.lwjgl.BufferUtils;
 import static org.lwjgl.opengl.GL20.GL_ARRAY_BUFFER;
 import static org.lwjgl.opengl.GL20.GL_COLOR_BUFFER_BIT;
 import static org.lwjgl.opengl.GL20.GL_DEPTH_BUFFER_BIT;
-import static org.lwjgl.opengl.GL20.GL_FLOAT;
 import static org.lwjgl.opengl.GL20.GL_FRAGMENT_SHADER;
 import static org.lwjgl.opengl.GL20.GL_QUADS;
 import static org.lwjgl.opengl.GL20.GL_STATIC_DRAW;
+import static org.lwjgl.opengl.GL20.GL_UNSIGNED_BYTE;
 import static org.lwjgl.opengl.GL20.GL_VERTEX_SHADER;
 import static org.lwjgl.opengl.GL20.glAttachShader;
 import static org.lwjgl.opengl.GL20.glBindBuffer;
@@ -27,6 +45,7 @@ import static org.lwjgl.opengl.GL20.glClearDepth;
 import static org.lwjgl.opengl.GL20.glCompileShader;
 import static org.lwjgl.opengl.GL20.glCreateProgram;
 import static org.lwjgl.opengl.GL20.glCreateShader;
+import static org.lwjgl.opengl.GL20.glDeleteBuffers;
 import static org.lwjgl.opengl.GL20.glDisableVertexAttribArray;
 import static org.lwjgl.opengl.GL20.glDrawArrays;
 import static org.lwjgl.opengl.GL20.glEnableVertexAttribArray;
@@ -39,39 +58,117 @@ import static org.lwjgl.opengl.GL20.glLinkProgram;
 import static org.lwjgl.opengl.GL20.glShaderSource;
 import static org.lwjgl.opengl.GL20.glUniform1f;
 import static org.lwjgl.opengl.GL20.glUniform1i;
+import static org.lwjgl.opengl.GL20.glUniform3f;
+import static org.lwjgl.opengl.GL20.glUniform3fv;
 import static org.lwjgl.opengl.GL20.glUniform4f;
 import static org.lwjgl.opengl.GL20.glUniformMatrix4fv;
 import static org.lwjgl.opengl.GL20.glUseProgram;
 import static org.lwjgl.opengl.GL20.glVertexAttribPointer;
 
+@Access(reads = {Terrain.class, PlayerTag.class, Position.class, ViewMatrixResource.class},
+        writes = RenderStatsResource.class, mainThread = true)
 public class TerrainRenderSystem extends EntitySystem {
+    public static final int DEFAULT_VIEW_DISTANCE = 5;
+
+    /// NOTE: columns closer than this, in chunks, are meshed at full detail, each next level of
+    /// detail reaches twice as far
+    public static final int DEFAULT_LOD_DISTANCE = 4;
+
+    /// NOTE: how far, in chunks, a column has to cross a level boundary to switch level, so that
+    /// moving along the boundary doesn't remesh columns back and forth
+    private static final float LOD_HYSTERESIS = 1.0f;
+
+    /// NOTE: max number of finished chunk meshes uploaded to the GPU per frame
+    private static final int UPLOADS_PER_FRAME = 8;
+
+    /// NOTE: max number of chunks snapshotted and handed to the mesh pipeline per frame
+    private static final int SUBMITS_PER_FRAME = 16;
+
+    /// NOTE: times a column that failed to mesh is queued again, after that it waits for an edit
+    private static final int MESH_RETRIES = 2;
+
     private final Terrain terrain;
+    private final ChunkMeshPipeline meshPipeline;
     private final ViewMatrixResource viewMatrixResource;
+    private final RenderStatsResource renderStatsResource;
 
     private int program;
 
-    private int vertexLoc;
-    private int colorLoc;
+    private int packedLoc;
 
-    private int projULoc, viewULoc, modelULoc;
+    private int projULoc, viewULoc;
+    private int chunkOriginULoc;
+    private int paletteULoc;
     private int fogEnableULoc;
     private int fogDensityULoc;
     private int fogColorULoc;
 
-    private final ArrayList<Pair<Integer, Integer>> renderQueue = new ArrayList<>();
+    private ImmutableArray<Entity> playerEntity;
+    private ComponentMapper<Position> pm = ComponentMapper.getFor(Position.class);
+
+    /// NOTE: radius, in chunks, of the area around the player that is kept meshed
+    private final int viewDistance;
+    private final int lodDistance;
+    private int centerX = Integer.MIN_VALUE, centerY = Integer.MIN_VALUE;
+
+    /// NOTE: chunks waiting to be submitted for meshing, nearest to the player first
+    private final ArrayList<ChunkBuffer> renderQueue = new ArrayList<>();
+
+    /// NOTE: every chunk within view distance, whether it is already meshed or not
+    private final ArrayList<ChunkBuffer> chunks = new ArrayList<>();
+    private final LongMap<ChunkBuffer> chunksByKey = new LongMap<>();
+
+    /// NOTE: columns edited since the last frame, remeshed once per frame however many edits they got
+    private final LongMap<Boolean> dirtyColumns = new LongMap<>();
+    private final TerrainListener terrainListener = this::chunkChanged;
+
+    /// NOTE: columns reached from the camera are stamped with the current frame
+    private final OcclusionCuller occlusionCuller;
+    private final Vector3f eye = new Vector3f();
+    private int frame;
 
-    private final ArrayList<Pair<Integer, Integer>> chunks = new ArrayList<>();
+    /// NOTE: totals over all uploaded chunk meshes
+    @Getter
+    private long meshedQuads, meshedVertices;
 
     public TerrainRenderSystem(Terrain terrain,
-                               ViewMatrixResource viewMatrixResource) {
+                               ViewMatrixResource viewMatrixResource,
+                               RenderStatsResource renderStatsResource) {
+        this(terrain, viewMatrixResource, renderStatsResource, MeshingMode.NAIVE, DEFAULT_VIEW_DISTANCE);
+    }
+
+    public TerrainRenderSystem(Terrain terrain,
+                               ViewMatrixResource viewMatrixResource,
+                               RenderStatsResource renderStatsResource,
+                               MeshingMode meshingMode,
+                               int viewDistance) {
+        this(terrain, viewMatrixResource, renderStatsResource, meshingMode, viewDistance, DEFAULT_LOD_DISTANCE);
+    }
+
+    /**
+     * @param lodDistance radius, in chunks, meshed at full detail; past it every doubling of the
+     *                    distance halves the detail, see {@link ChunkMeshPipeline#MAX_LOD}
+     */
+    public TerrainRenderSystem(Terrain terrain,
+                               ViewMatrixResource viewMatrixResource,
+                               RenderStatsResource renderStatsResource,
+                               MeshingMode meshingMode,
+                               int viewDistance,
+                               int lodDistance) {
         this.terrain = terrain;
+        this.viewDistance = viewDistance;
+        this.lodDistance = lodDistance;
         this.viewMatrixResource = viewMatrixResource;
+        this.renderStatsResource = renderStatsResource;
+        this.meshPipeline = new ChunkMeshPipeline(terrain, meshingMode);
+        /// NOTE: the camera may already be in the next column before the player's position is
+        this.occlusionCuller = new OcclusionCuller(viewDistance + 1);
 
         String vertexSrc = null;
         String fragmentSrc = null;
 
         try {
-            vertexSrc = File.readToString("vertex.glsl");
+            vertexSrc = File.readToString("terrain_vertex.glsl");
             fragmentSrc = File.readToString("fragment.glsl");
         } catch (IOException e) {
             e.printStackTrace();
@@ -99,26 +196,47 @@ public class TerrainRenderSystem extends EntitySystem {
 
         this.program = program;
 
-        this.colorLoc = glGetAttribLocation(program, "in_Color");
-        this.vertexLoc = glGetAttribLocation(program, "in_Position");
+        this.packedLoc = glGetAttribLocation(program, "in_Packed");
 
         this.projULoc = glGetUniformLocation(program, "projMatrix");
         this.viewULoc = glGetUniformLocation(program, "viewMatrix");
-        this.modelULoc = glGetUniformLocation(program, "modelMatrix");
+        this.chunkOriginULoc = glGetUniformLocation(program, "chunkOrigin");
+        this.paletteULoc = glGetUniformLocation(program, "palette");
 
         this.fogEnableULoc = glGetUniformLocation(program, "fogEnable");
         this.fogDensityULoc = glGetUniformLocation(program, "fogDensity");
         this.fogColorULoc = glGetUniformLocation(program, "fogColor");
 
-        for (int x = -5; x < 5; ++x) {
-            for (int y = -5; y < 5; ++y) {
-                renderQueue.add(new Pair<>(x, y));
-            }
-        }
+        glUseProgram(program);
+        glUniform3fv(paletteULoc, ChunkMesher.PALETTE);
+        glUseProgram(0);
+    }
+
+    @Override
+    public void addedToEngine(Engine engine) {
+        playerEntity = engine.getEntitiesFor(Family.all(
+                PlayerTag.class,
+                Position.class
+        ).get());
+        terrain.addListener(terrainListener);
+    }
+
+    @Override
+    public void removedFromEngine(Engine engine) {
+        terrain.removeListener(terrainListener);
+        meshPipeline.close();
     }
 
     @Override
     public void update(float deltaTime) {
+        if (playerEntity.size() != 0) {
+            final Position position = pm.get(playerEntity.first());
+            updateLoadedChunks(
+                    Math.floorDiv((int) Math.floor(position.x), ChunkMesher.SIZE),
+                    Math.floorDiv((int) Math.floor(position.y), ChunkMesher.SIZE));
+        }
+
+        remeshDirtyColumns();
         executeRenderQueue();
 
         glClearColor(0.5f, 0.8f, 1.0f, 0.0f);
@@ -127,151 +245,259 @@ public class TerrainRenderSystem extends EntitySystem {
 
         FloatBuffer fb = BufferUtils.createFloatBuffer(16);
 
-        Matrix4f projMatrix = new Matrix4f();
-        projMatrix.perspective(
-                (float) Math.toRadians(70.0f),
-                800.f / 600.f, 0.05f, 1000.0f);
+        final FrustumIntersection frustum = viewMatrixResource.getFrustum();
+        cullOccluded(frustum);
+        int drawn = 0, culled = 0, occluded = 0, vertices = 0;
 
         glUseProgram(program);
 
-        glEnableVertexAttribArray(vertexLoc);
-        glEnableVertexAttribArray(colorLoc);
+        glEnableVertexAttribArray(packedLoc);
 
-        Matrix4f modelMatrix = new Matrix4f();
-
-        glUniformMatrix4fv(projULoc, false, projMatrix.get(fb));
+        glUniformMatrix4fv(projULoc, false, viewMatrixResource.getProjMatrix().get(fb));
         glUniformMatrix4fv(viewULoc, false, viewMatrixResource.getViewMatrix().get(fb));
-        glUniformMatrix4fv(modelULoc, false, modelMatrix.get(fb));
 
         glUniform1i(fogEnableULoc, 1);
         glUniform1f(fogDensityULoc, 0.01f);
         glUniform4f(fogColorULoc, 254f / 255f, 251f / 255f, 250f / 255f, 1.0f);
 
-        for (Pair<Integer, Integer> chunk : chunks) {
-            /// NOTE: `24` and `12` here are offsets in bytes
-            glBindBuffer(GL_ARRAY_BUFFER, chunk.getA());
+        for (ChunkBuffer chunk : chunks) {
+            if (chunk.buffer == 0) {
+                continue;
+            }
+
+            final float minX = chunk.chunkX * ChunkMesher.SIZE;
+            final float minY = chunk.chunkY * ChunkMesher.SIZE;
+
+            if (!frustum.testAab(minX, minY, 0.0f,
+                    minX + ChunkMesher.SIZE, minY + ChunkMesher.SIZE, ChunkMesher.HEIGHT)) {
+                culled++;
+                continue;
+            }
+            if (chunk.visibleFrame != frame) {
+                occluded++;
+                continue;
+            }
+            drawn++;
+
+            glUniform3f(chunkOriginULoc, minX, minY, 0.0f);
 
-            glVertexAttribPointer(vertexLoc, 3, GL_FLOAT, false, 24, 0);
-            glVertexAttribPointer(colorLoc, 3, GL_FLOAT, false, 24, 12);
+            /// NOTE: vertices are 4 unsigned bytes each, see ChunkMesher
+            glBindBuffer(GL_ARRAY_BUFFER, chunk.buffer);
+            glVertexAttribPointer(packedLoc, 4, GL_UNSIGNED_BYTE, false, ChunkMesher.BYTES_PER_VERTEX, 0);
 
-            glDrawArrays(GL_QUADS, 0, chunk.getB() * 4);
+            glDrawArrays(GL_QUADS, 0, chunk.quads * 4);
             glBindBuffer(GL_ARRAY_BUFFER, 0);
+            vertices += chunk.quads * 4;
         }
 
-        glDisableVertexAttribArray(vertexLoc);
-        glDisableVertexAttribArray(colorLoc);
+        glDisableVertexAttribArray(packedLoc);
 
         glUseProgram(0);
+
+        renderStatsResource.setChunksDrawn(drawn);
+        renderStatsResource.setChunksCulled(culled);
+        renderStatsResource.setChunksOccluded(occluded);
+        renderStatsResource.setChunkVertices(vertices);
     }
 
-    private void executeRenderQueue() {
+    /**
+     * Stamps the columns the camera may see past solid terrain, see {@link OcclusionCuller}.
+     * Columns that weren't meshed yet are taken as open air.
+     */
+    private void cullOccluded(FrustumIntersection frustum) {
+        ++frame;
+        viewMatrixResource.getViewMatrix().origin(eye);
+        occlusionCuller.cull(eye.x, eye.y, eye.z,
+                (chunkX, chunkY, section) -> {
+                    final ChunkBuffer chunk = chunksByKey.get(Terrain.chunkKey(chunkX, chunkY, 0));
+                    return chunk == null || chunk.visibility == null ? OcclusionCuller.ALL : chunk.visibility[section];
+                },
+                frustum::testAab,
+                (chunkX, chunkY) -> {
+                    final ChunkBuffer chunk = chunksByKey.get(Terrain.chunkKey(chunkX, chunkY, 0));
+                    if (chunk != null) {
+                        chunk.visibleFrame = frame;
+                    }
+                });
+    }
 
-        if (renderQueue.isEmpty()) {
+    /**
+     * Queues chunks that entered the view distance around the given chunk, nearest first,
+     * and frees chunks that left it. Chunks are only dropped one chunk past the view distance,
+     * so walking back and forth over a chunk border doesn't remesh anything. Meshed chunks that
+     * moved to another level of detail are queued again, keeping the old mesh until then.
+     */
+    private void updateLoadedChunks(int chunkX, int chunkY) {
+        if (chunkX == centerX && chunkY == centerY) {
             return;
         }
+        centerX = chunkX;
+        centerY = chunkY;
+
+        final int unloadDistance = viewDistance + 1;
+        for (int i = chunks.size() - 1; i >= 0; --i) {
+            final ChunkBuffer chunk = chunks.get(i);
+            if (distanceSq(chunk, chunkX, chunkY) <= unloadDistance * unloadDistance) {
+                continue;
+            }
+            if (chunk.buffer != 0) {
+                glDeleteBuffers(chunk.buffer);
+            }
+            chunks.set(i, chunks.get(chunks.size() - 1));
+            chunks.remove(chunks.size() - 1);
+            chunksByKey.remove(Terrain.chunkKey(chunk.chunkX, chunk.chunkY, 0));
+        }
+        renderQueue.removeIf(chunk -> !chunksByKey.containsKey(Terrain.chunkKey(chunk.chunkX, chunk.chunkY, 0)));
+
+        for (ChunkBuffer chunk : chunks) {
+            final int lod = lod(chunk.lod, (float) Math.sqrt(distanceSq(chunk, chunkX, chunkY)));
+            if (lod != chunk.lod) {
+                chunk.lod = lod;
+                if (!chunk.queued) {
+                    chunk.queued = true;
+                    renderQueue.add(chunk);
+                }
+            }
+        }
 
-        final Pair<Integer, Integer> chunkCoords = renderQueue.remove(0);
-        final FloatBuffer verticesBuf =
-                BufferUtils.createFloatBuffer(16 * 16 * 64 * 216);
-
-        final int minX = chunkCoords.getA() * 16;
-        final int minY = chunkCoords.getB() * 16;
-        final int maxX = minX + 15;
-        final int maxY = minY + 15;
-
-        int faces = 0;
-
-        for (int z = 0; z < 64; ++z) {
-            for (int y = minY; y <= maxY; ++y) {
-                for (int x = minX; x <= maxX; ++x) {
-
-                    float[] vertices1 = new float[]{
-                            x + 1.0f, y + 0.0f, z + 0.0f, 0.5f, 0.0f, 0.0f,
-                            x + 0.0f, y + 0.0f, z + 0.0f, 0.5f, 0.0f, 0.0f,
-                            x + 0.0f, y + 1.0f, z + 0.0f, 0.5f, 0.0f, 0.0f,
-                            x + 1.0f, y + 1.0f, z + 0.0f, 0.5f, 0.0f, 0.0f
-                    };
-
-                    float[] vertices2 = new float[]{
-                            x + 1.0f, y + 0.0f, z + 1.0f, 0.25f, 0.125f, 0.0f,
-                            x + 1.0f, y + 1.0f, z + 1.0f, 0.25f, 0.125f, 0.0f,
-                            x + 0.0f, y + 1.0f, z + 1.0f, 0.25f, 0.125f, 0.0f,
-                            x + 0.0f, y + 0.0f, z + 1.0f, 0.25f, 0.125f, 0.0f,
-                    };
-
-                    float[] vertices3 = new float[]{
-                            x + 1.0f, y + 0.0f, z + 0.0f, 0.0f, 0.5f, 0.0f,
-                            x + 1.0f, y + 1.0f, z + 0.0f, 0.0f, 0.5f, 0.0f,
-                            x + 1.0f, y + 1.0f, z + 1.0f, 0.0f, 0.5f, 0.0f,
-                            x + 1.0f, y + 0.0f, z + 1.0f, 0.0f, 0.5f, 0.0f,
-                    };
-
-                    float[] vertices4 = new float[]{
-                            x + 0.0f, y + 0.0f, z + 1.0f, 0.5f, 0.5f, 0.5f,
-                            x + 0.0f, y + 1.0f, z + 1.0f, 0.5f, 0.5f, 0.5f,
-                            x + 0.0f, y + 1.0f, z + 0.0f, 0.5f, 0.5f, 0.5f,
-                            x + 0.0f, y + 0.0f, z + 0.0f, 0.5f, 0.5f, 0.5f,
-                    };
-
-                    float[] vertices5 = new float[]{
-                            x + 1.0f, y + 1.0f, z + 1.0f, 0.0f, 0.0f, 0.5f,
-                            x + 1.0f, y + 1.0f, z + 0.0f, 0.0f, 0.0f, 0.5f,
-                            x + 0.0f, y + 1.0f, z + 0.0f, 0.0f, 0.0f, 0.5f,
-                            x + 0.0f, y + 1.0f, z + 1.0f, 0.0f, 0.0f, 0.5f,
-                    };
-
-                    float[] vertices6 = new float[]{
-                            x + 1.0f, y + 0.0f, z + 0.0f, 0.5f, 0.0f, 0.5f,
-                            x + 1.0f, y + 0.0f, z + 1.0f, 0.5f, 0.0f, 0.5f,
-                            x + 0.0f, y + 0.0f, z + 1.0f, 0.5f, 0.0f, 0.5f,
-                            x + 0.0f, y + 0.0f, z + 0.0f, 0.5f, 0.0f, 0.5f,
-                    };
-
-                    if (!terrain.hasBlock(x, y, z)) {
-                        continue;
-                    }
+        for (int y = chunkY - viewDistance; y <= chunkY + viewDistance; ++y) {
+            for (int x = chunkX - viewDistance; x <= chunkX + viewDistance; ++x) {
+                final long key = Terrain.chunkKey(x, y, 0);
+                if (chunksByKey.containsKey(key)) {
+                    continue;
+                }
 
-                    if (!terrain.hasBlock(x, y, z - 1)) {
-                        verticesBuf.put(vertices1);
-                        faces++;
-                    }
+                final ChunkBuffer chunk = new ChunkBuffer(x, y);
+                if (distanceSq(chunk, chunkX, chunkY) > viewDistance * viewDistance) {
+                    continue;
+                }
+                chunk.lod = lod(-1, (float) Math.sqrt(distanceSq(chunk, chunkX, chunkY)));
+                chunk.queued = true;
+                chunks.add(chunk);
+                chunksByKey.put(key, chunk);
+                renderQueue.add(chunk);
+            }
+        }
 
-                    if (!terrain.hasBlock(x, y, z + 1)) {
-                        verticesBuf.put(vertices2);
-                        faces++;
-                    }
+        renderQueue.sort(Comparator.comparingInt(chunk -> distanceSq(chunk, chunkX, chunkY)));
+    }
 
-                    if (!terrain.hasBlock(x + 1, y, z)) {
-                        verticesBuf.put(vertices3);
-                        faces++;
-                    }
+    /**
+     * @param current level of detail the column is meshed at, -1 for a new column
+     * @param distance from the player's column, in chunks
+     */
+    private int lod(int current, float distance) {
+        final float hysteresis = current == -1 ? 0.0f : LOD_HYSTERESIS;
+        int lod = Math.max(current, 0);
+        while (lod < ChunkMeshPipeline.MAX_LOD && distance >= (lodDistance << lod) + hysteresis) {
+            ++lod;
+        }
+        while (lod > 0 && distance < (lodDistance << (lod - 1)) - hysteresis) {
+            --lod;
+        }
+        return lod;
+    }
 
-                    if (!terrain.hasBlock(x - 1, y, z)) {
-                        verticesBuf.put(vertices4);
-                        faces++;
-                    }
+    private static int distanceSq(ChunkBuffer chunk, int chunkX, int chunkY) {
+        final int dx = chunk.chunkX - chunkX;
+        final int dy = chunk.chunkY - chunkY;
+        return dx * dx + dy * dy;
+    }
 
-                    if (!terrain.hasBlock(x, y + 1, z)) {
-                        verticesBuf.put(vertices5);
-                        faces++;
-                    }
+    /**
+     * Called by the terrain on the thread editing it, a logic system that finished before
+     * this system runs.
+     */
+    private void chunkChanged(int cx, int cy, int cz) {
+        if (cz >= 0 && cz < ChunkMesher.HEIGHT / ChunkMesher.SIZE) {
+            dirtyColumns.put(Terrain.chunkKey(cx, cy, 0), Boolean.TRUE);
+        }
+    }
 
-                    if (!terrain.hasBlock(x, y - 1, z)) {
-                        verticesBuf.put(vertices6);
-                        faces++;
-                    }
+    /**
+     * Submits every edited column that isn't queued, regardless of {@link #SUBMITS_PER_FRAME};
+     * queued columns, whether never submitted or queued again, are meshed with the edits when
+     * their turn comes.
+     */
+    private void remeshDirtyColumns() {
+        dirtyColumns.forEach((key, value) -> {
+            final ChunkBuffer chunk = chunksByKey.get(key);
+            if (chunk == null) {
+                return;
+            }
+            chunk.failures = 0;
+            if (!chunk.queued) {
+                chunk.sequence = meshPipeline.submit(chunk.chunkX, chunk.chunkY, chunk.lod);
+            }
+        });
+        dirtyColumns.clear();
+    }
+
+    private void executeRenderQueue() {
+        int meshed = 0;
+        for (int submits = 0; submits < SUBMITS_PER_FRAME && !renderQueue.isEmpty(); ++submits) {
+            final ChunkBuffer chunk = renderQueue.remove(0);
+            chunk.queued = false;
+            chunk.sequence = meshPipeline.submit(chunk.chunkX, chunk.chunkY, chunk.lod);
+        }
+
+        ChunkMesh mesh;
+        for (int uploads = 0; uploads < UPLOADS_PER_FRAME && (mesh = meshPipeline.poll()) != null; ++uploads) {
+            final ChunkBuffer chunk = chunksByKey.get(Terrain.chunkKey(mesh.getChunkX(), mesh.getChunkY(), 0));
+
+            // the chunk may have left the view distance or been edited while it was being meshed
+            if (chunk != null && chunk.sequence == mesh.getSequence() && mesh.isFailed()) {
+                // keeps the previous mesh, if any, until the column is meshed again
+                if (!chunk.queued && chunk.failures++ < MESH_RETRIES) {
+                    chunk.queued = true;
+                    renderQueue.add(chunk);
+                }
+            } else if (chunk != null && chunk.sequence == mesh.getSequence()) {
+                if (chunk.buffer == 0) {
+                    chunk.buffer = glGenBuffers();
                 }
+
+                glBindBuffer(GL_ARRAY_BUFFER, chunk.buffer);
+                glBufferData(GL_ARRAY_BUFFER, mesh.getVertices(), GL_STATIC_DRAW);
+                glBindBuffer(GL_ARRAY_BUFFER, 0);
+
+                chunk.quads = mesh.getQuads();
+                chunk.failures = 0;
+                chunk.visibility = mesh.getVisibility();
+                meshed++;
+                meshedQuads += mesh.getQuads();
+                meshedVertices += mesh.getVertexCount();
             }
+
+            meshPipeline.recycle(mesh);
         }
+        renderStatsResource.setChunksMeshed(meshed);
+    }
+
+    private static final class ChunkBuffer {
+        final int chunkX, chunkY;
+
+        /// NOTE: 0 until the chunk is meshed and uploaded
+        int buffer;
+        int quads;
 
-        verticesBuf.flip();
+        /// NOTE: of the uploaded mesh, null until then
+        long[] visibility;
+        int visibleFrame;
 
-        final int newBuffer = glGenBuffers();
+        /// NOTE: of the latest submit, 0 until the chunk is submitted
+        long sequence;
 
-        glBindBuffer(GL_ARRAY_BUFFER, newBuffer);
-        glBufferData(GL_ARRAY_BUFFER, verticesBuf, GL_STATIC_DRAW);
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        /// NOTE: level of detail of the latest submit, or of the next one while queued
+        int lod;
+        boolean queued;
 
-        chunks.add(new Pair<>(newBuffer, faces));
+        /// NOTE: failed meshes in a row since the last upload or edit
+        int failures;
+
+        ChunkBuffer(int chunkX, int chunkY) {
+            this.chunkX = chunkX;
+            this.chunkY = chunkY;
+        }
     }
 }
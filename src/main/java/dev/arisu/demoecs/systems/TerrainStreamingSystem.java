@@ -0,0 +1,74 @@
+package dev.arisu.demoecs.systems;
+
+import com.badlogic.ashley.core.ComponentMapper;
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.EntitySystem;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.ashley.utils.ImmutableArray;
+import dev.arisu.demoecs.Access;
+import dev.arisu.demoecs.components.PlayerTag;
+import dev.arisu.demoecs.components.Position;
+import dev.arisu.demoecs.terrain.Chunk;
+import dev.arisu.demoecs.terrain.Terrain;
+
+/**
+ * Keeps the terrain around the player in memory: loads or generates chunks within the radius
+ * once the player enters another chunk, unloads those one chunk past it, and saves edited chunks
+ * every {@code saveIntervalTicks}.
+ */
+@Access(reads = {PlayerTag.class, Position.class}, writes = Terrain.class)
+public class TerrainStreamingSystem extends EntitySystem {
+    public static final int DEFAULT_RADIUS = 8;
+
+    /// NOTE: the world is only a few chunks high
+    private static final int VERTICAL_RADIUS = 1;
+
+    private final Terrain terrain;
+    private final int radius;
+    private final int saveIntervalTicks;
+
+    private ImmutableArray<Entity> playerEntity;
+    private ComponentMapper<Position> pm = ComponentMapper.getFor(Position.class);
+
+    private int centerX = Integer.MIN_VALUE, centerY = Integer.MIN_VALUE, centerZ = Integer.MIN_VALUE;
+    private int ticksSinceSave;
+
+    public TerrainStreamingSystem(Terrain terrain, int radius, int saveIntervalTicks) {
+        this.terrain = terrain;
+        this.radius = radius;
+        this.saveIntervalTicks = saveIntervalTicks;
+    }
+
+    @Override
+    public void addedToEngine(Engine engine) {
+        playerEntity = engine.getEntitiesFor(Family.all(PlayerTag.class, Position.class).get());
+    }
+
+    @Override
+    public void update(float deltaTime) {
+        if (++ticksSinceSave >= saveIntervalTicks) {
+            ticksSinceSave = 0;
+            terrain.save();
+        }
+
+        if (playerEntity.size() == 0) {
+            return;
+        }
+        final Position position = pm.get(playerEntity.first());
+        final int chunkX = (int) Math.floor(position.x) >> Chunk.SIZE_BITS;
+        final int chunkY = (int) Math.floor(position.y) >> Chunk.SIZE_BITS;
+        final int chunkZ = (int) Math.floor(position.z) >> Chunk.SIZE_BITS;
+        if (chunkX == centerX && chunkY == centerY && chunkZ == centerZ) {
+            return;
+        }
+        centerX = chunkX;
+        centerY = chunkY;
+        centerZ = chunkZ;
+
+        terrain.generate(chunkX - radius, chunkY - radius, chunkZ - VERTICAL_RADIUS,
+                chunkX + radius, chunkY + radius, chunkZ + VERTICAL_RADIUS);
+        terrain.unloadOutside(chunkX - radius - 1, chunkY - radius - 1, chunkZ - VERTICAL_RADIUS - 1,
+                chunkX + radius + 1, chunkY + radius + 1, chunkZ + VERTICAL_RADIUS + 1);
+    }
+}
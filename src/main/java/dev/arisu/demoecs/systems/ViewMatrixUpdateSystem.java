@@ -6,22 +6,31 @@ import com.badlogic.ashley.core.Entity;
 import com.badlogic.ashley.core.EntitySystem;
 import com.badlogic.ashley.core.Family;
 import com.badlogic.ashley.utils.ImmutableArray;
+import dev.arisu.demoecs.Access;
 import dev.arisu.demoecs.components.PlayerTag;
 import dev.arisu.demoecs.components.Position;
+import dev.arisu.demoecs.components.PreviousPosition;
 import dev.arisu.demoecs.components.Rotation;
+import dev.arisu.demoecs.resources.TimeResource;
 import dev.arisu.demoecs.resources.ViewMatrixResource;
 import org.joml.Matrix4f;
 
+@Access(reads = {PlayerTag.class, Position.class, PreviousPosition.class, Rotation.class, TimeResource.class},
+        writes = ViewMatrixResource.class)
 public class ViewMatrixUpdateSystem extends EntitySystem {
     private ComponentMapper<Position> pm = ComponentMapper.getFor(Position.class);
+    private ComponentMapper<PreviousPosition> ppm = ComponentMapper.getFor(PreviousPosition.class);
     private ComponentMapper<Rotation> rm = ComponentMapper.getFor(Rotation.class);
 
     private ImmutableArray<Entity> playerEntity;
 
     private final ViewMatrixResource viewMatrixResource;
+    private final TimeResource timeResource;
 
-    public ViewMatrixUpdateSystem(ViewMatrixResource viewMatrixResource) {
+    public ViewMatrixUpdateSystem(ViewMatrixResource viewMatrixResource,
+                                  TimeResource timeResource) {
         this.viewMatrixResource = viewMatrixResource;
+        this.timeResource = timeResource;
     }
 
     @Override
@@ -33,8 +42,17 @@ public class ViewMatrixUpdateSystem extends EntitySystem {
     public void update(float deltaTime) {
         Entity player = playerEntity.first();
         Position pPos = pm.get(player);
+        PreviousPosition pPrev = ppm.get(player);
         Rotation pRot = rm.get(player);
 
+        float x = pPos.x, y = pPos.y, z = pPos.z;
+        if (pPrev != null) {
+            final float alpha = timeResource.getAlpha();
+            x = pPrev.lerpX(pPos, alpha);
+            y = pPrev.lerpY(pPos, alpha);
+            z = pPrev.lerpZ(pPos, alpha);
+        }
+
         Matrix4f viewMatrix = new Matrix4f();
 
         // rotate to "normal" view where:
@@ -46,9 +64,16 @@ public class ViewMatrixUpdateSystem extends EntitySystem {
 
         viewMatrix.rotateY((float) Math.toRadians(-pRot.pitch));
         viewMatrix.rotateZ((float) Math.toRadians(-pRot.yaw));
-        viewMatrix.translate(-pPos.x, -pPos.y, -pPos.z);
+        viewMatrix.translate(-x, -y, -z);
         viewMatrix.translate(0.0f, 0.0f, -1.6f);
 
+        Matrix4f projMatrix = new Matrix4f();
+        projMatrix.perspective(
+                (float) Math.toRadians(70.0f),
+                800.f / 600.f, 0.05f, 1000.0f);
+
         viewMatrixResource.setViewMatrix(viewMatrix);
+        viewMatrixResource.setProjMatrix(projMatrix);
+        viewMatrixResource.getFrustum().set(new Matrix4f(projMatrix).mul(viewMatrix));
     }
 }
@@ -0,0 +1,28 @@
+package dev.arisu.demoecs.terrain;
+
+/**
+ * Read-only access to blocks by world coordinates.
+ */
+public interface BlockView {
+    byte getBlock(int x, int y, int z);
+
+    default boolean hasBlock(int x, int y, int z) {
+        return getBlock(x, y, z) != 0;
+    }
+
+    /**
+     * Occupancy of a row of a chunk along x: bit {@code i} is set if block {@code (x + i, y, z)}
+     * isn't air, for {@code i} in [0, {@link Chunk#SIZE}).
+     *
+     * @param x first block of the row, a multiple of {@link Chunk#SIZE}
+     */
+    default int getRow(int x, int y, int z) {
+        int row = 0;
+        for (int i = 0; i < Chunk.SIZE; ++i) {
+            if (hasBlock(x + i, y, z)) {
+                row |= 1 << i;
+            }
+        }
+        return row;
+    }
+}
@@ -0,0 +1,274 @@
+package dev.arisu.demoecs.terrain;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Fixed-size cube of {@link #SIZE}<sup>3</sup> blocks.
+ * <p>
+ * Blocks are stored as indices into a small per-chunk palette, bit-packed into a {@code long[]}.
+ * The index width is the smallest power of two that fits the palette (1 bit for air/solid,
+ * growing up to 8 bits), so entries never straddle two words.
+ * <p>
+ * Chunks consisting of a single block type are represented by shared immutable sentinels
+ * (see {@link #uniform(byte)}), which take no per-chunk memory. Writing into a sentinel
+ * is not allowed: use {@link #toMutable()} first.
+ */
+public final class Chunk {
+    public static final int SIZE_BITS = 4;
+    public static final int SIZE = 1 << SIZE_BITS;
+    public static final int MASK = SIZE - 1;
+    public static final int VOLUME = SIZE * SIZE * SIZE;
+
+    /// NOTE: every block of a row, see `getRow`
+    public static final int ROW_MASK = (1 << SIZE) - 1;
+
+    private static final Chunk[] UNIFORM = new Chunk[256];
+
+    static {
+        for (int i = 0; i < UNIFORM.length; ++i) {
+            UNIFORM[i] = new Chunk(new byte[]{(byte) i}, 0);
+        }
+    }
+
+    private byte[] palette;
+    private int paletteSize;
+
+    /// NOTE: uniform sentinels have `bits == 0`, so every lookup resolves to `palette[0]`
+    private int bits;
+    private int indexMask;
+    private long[] data;
+
+    private int nonAir;
+
+    private Chunk(byte[] palette, int bits) {
+        this.palette = palette;
+        this.paletteSize = 1;
+        this.data = new long[Math.max(1, VOLUME * bits / 64)];
+        setBits(bits);
+        this.nonAir = palette[0] != 0 ? VOLUME : 0;
+    }
+
+    public static Chunk uniform(byte block) {
+        return UNIFORM[block & 0xFF];
+    }
+
+    public boolean isUniform() {
+        return bits == 0;
+    }
+
+    public boolean isEmpty() {
+        return nonAir == 0;
+    }
+
+    public int getBitsPerBlock() {
+        return bits;
+    }
+
+    /**
+     * @return mutable chunk holding the same blocks; {@code this} if it is already mutable.
+     */
+    public Chunk toMutable() {
+        if (bits != 0) {
+            return this;
+        }
+        final byte[] palette = new byte[2];
+        palette[0] = this.palette[0];
+        return new Chunk(palette, 1);
+    }
+
+    /**
+     * @return independent copy of this chunk; sentinels are returned as is.
+     */
+    public Chunk copy() {
+        if (bits == 0) {
+            return this;
+        }
+        final Chunk copy = new Chunk(palette.clone(), bits);
+        System.arraycopy(data, 0, copy.data, 0, data.length);
+        copy.paletteSize = paletteSize;
+        copy.nonAir = nonAir;
+        return copy;
+    }
+
+    /**
+     * @return shared sentinel if every block of this chunk is the same, {@code this} otherwise.
+     */
+    public Chunk compact() {
+        if (bits == 0) {
+            return this;
+        }
+        if (nonAir != 0 && nonAir != VOLUME) {
+            return this;
+        }
+        final int first = index(0);
+        for (int i = 1; i < VOLUME; ++i) {
+            if (index(i) != first) {
+                return this;
+            }
+        }
+        return uniform(palette[first]);
+    }
+
+    /**
+     * Writes the palette and packed indices as they are, see {@link #read(DataInput)}.
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeByte(bits);
+        if (bits == 0) {
+            out.writeByte(palette[0]);
+            return;
+        }
+        /// NOTE: a full palette of 256 blocks doesn't fit a byte
+        out.writeByte(paletteSize - 1);
+        out.write(palette, 0, paletteSize);
+        for (long word : data) {
+            out.writeLong(word);
+        }
+    }
+
+    /**
+     * @return chunk written by {@link #write(DataOutput)}; uniform chunks come back as sentinels.
+     */
+    public static Chunk read(DataInput in) throws IOException {
+        final int bits = in.readUnsignedByte();
+        if (bits == 0) {
+            return uniform(in.readByte());
+        }
+        if (bits > 8 || Integer.bitCount(bits) != 1) {
+            throw new IOException("invalid bits per block: " + bits);
+        }
+
+        final int paletteSize = in.readUnsignedByte() + 1;
+        if (paletteSize > 1 << bits) {
+            throw new IOException("palette of " + paletteSize + " blocks for " + bits + " bits");
+        }
+        final byte[] palette = new byte[Math.max(2, paletteSize)];
+        in.readFully(palette, 0, paletteSize);
+
+        final Chunk chunk = new Chunk(palette, bits);
+        chunk.paletteSize = paletteSize;
+        for (int i = 0; i < chunk.data.length; ++i) {
+            chunk.data[i] = in.readLong();
+        }
+
+        int nonAir = 0;
+        for (int i = 0; i < VOLUME; ++i) {
+            final int index = chunk.index(i);
+            if (index >= paletteSize) {
+                throw new IOException("palette index " + index + " out of " + paletteSize);
+            }
+            if (palette[index] != 0) {
+                ++nonAir;
+            }
+        }
+        chunk.nonAir = nonAir;
+        return chunk;
+    }
+
+    public byte getBlock(int x, int y, int z) {
+        return palette[index(offset(x, y, z))];
+    }
+
+    /**
+     * Occupancy of the row along x, see {@link BlockView#getRow}.
+     *
+     * @param y local coordinate in range [0, {@link #SIZE})
+     * @param z local coordinate in range [0, {@link #SIZE})
+     */
+    public int getRow(int y, int z) {
+        if (bits == 0) {
+            return palette[0] != 0 ? ROW_MASK : 0;
+        }
+        final int offset = offset(0, y, z);
+        if (bits == 1) {
+            /// NOTE: indices of a row are the row itself, 16 bits of a single word
+            final int indices = (int) (data[offset >>> 6] >>> (offset & 63)) & ROW_MASK;
+            return (palette[0] != 0 ? ~indices & ROW_MASK : 0) | (palette[1] != 0 ? indices : 0);
+        }
+        int row = 0;
+        for (int x = 0; x < SIZE; ++x) {
+            if (palette[index(offset + x)] != 0) {
+                row |= 1 << x;
+            }
+        }
+        return row;
+    }
+
+    /**
+     * @param x local coordinate in range [0, {@link #SIZE})
+     * @param y local coordinate in range [0, {@link #SIZE})
+     * @param z local coordinate in range [0, {@link #SIZE})
+     */
+    public void setBlock(int x, int y, int z, byte block) {
+        if (bits == 0) {
+            throw new IllegalStateException("uniform chunk is immutable");
+        }
+        final int offset = offset(x, y, z);
+        final byte previous = palette[index(offset)];
+        if (previous == block) {
+            return;
+        }
+        if (previous == 0) {
+            ++nonAir;
+        } else if (block == 0) {
+            --nonAir;
+        }
+        setIndex(offset, paletteIndex(block));
+    }
+
+    static int offset(int x, int y, int z) {
+        return (z << (2 * SIZE_BITS)) | (y << SIZE_BITS) | x;
+    }
+
+    private void setBits(int bits) {
+        this.bits = bits;
+        this.indexMask = (1 << bits) - 1;
+    }
+
+    private int index(int offset) {
+        final int bitIndex = offset * bits;
+        return (int) (data[bitIndex >>> 6] >>> (bitIndex & 63)) & indexMask;
+    }
+
+    private void setIndex(int offset, int index) {
+        final int bitIndex = offset * bits;
+        final int shift = bitIndex & 63;
+        final long mask = (long) indexMask << shift;
+        data[bitIndex >>> 6] = (data[bitIndex >>> 6] & ~mask) | ((long) index << shift);
+    }
+
+    private int paletteIndex(byte block) {
+        for (int i = 0; i < paletteSize; ++i) {
+            if (palette[i] == block) {
+                return i;
+            }
+        }
+
+        if (paletteSize == 1 << bits) {
+            resize(bits << 1);
+        }
+        if (paletteSize == palette.length) {
+            final byte[] grown = new byte[palette.length << 1];
+            System.arraycopy(palette, 0, grown, 0, paletteSize);
+            palette = grown;
+        }
+        palette[paletteSize] = block;
+        return paletteSize++;
+    }
+
+    private void resize(int newBits) {
+        final int oldBits = bits;
+        final long[] oldData = data;
+        final int oldMask = (1 << oldBits) - 1;
+
+        data = new long[VOLUME * newBits / 64];
+        setBits(newBits);
+
+        for (int i = 0; i < VOLUME; ++i) {
+            final int bitIndex = i * oldBits;
+            setIndex(i, (int) (oldData[bitIndex >>> 6] >>> (bitIndex & 63)) & oldMask);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package dev.arisu.demoecs.terrain;
+
+/**
+ * Square slab of ground at {@code z == 0} with short pillars scattered over it, the terrain
+ * of the demo. Whether a column has a pillar, and how tall it is, comes from a hash of the seed
+ * and the column coordinates, so columns don't depend on each other.
+ */
+public final class PillarGenerator implements TerrainGenerator {
+    /// NOTE: ground covers [-RADIUS, RADIUS) on both axes
+    public static final int RADIUS = 128;
+
+    /// NOTE: one column in PILLAR_CHANCE rolls a pillar of 0, 0, 1 or 2 blocks
+    private static final int PILLAR_CHANCE = 15;
+    private static final int MAX_PILLAR_HEIGHT = 2;
+
+    private final long seed;
+
+    public PillarGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    @Override
+    public byte getBlock(int x, int y, int z) {
+        if (z < 0 || z > MAX_PILLAR_HEIGHT || x < -RADIUS || x >= RADIUS || y < -RADIUS || y >= RADIUS) {
+            return 0;
+        }
+        if (z == 0) {
+            return 1;
+        }
+        return (byte) (z <= pillarHeight(x, y) ? 1 : 0);
+    }
+
+    @Override
+    public int getRow(int x, int y, int z) {
+        /// NOTE: RADIUS is a multiple of the row length, rows are either on the ground or off it
+        if (z < 0 || z > MAX_PILLAR_HEIGHT || x < -RADIUS || x >= RADIUS || y < -RADIUS || y >= RADIUS) {
+            return 0;
+        }
+        if (z == 0) {
+            return Chunk.ROW_MASK;
+        }
+        return TerrainGenerator.super.getRow(x, y, z);
+    }
+
+    private int pillarHeight(int x, int y) {
+        final long hash = mix(seed ^ mix(((long) x << 32) | (y & 0xFFFFFFFFL)));
+        if (Long.remainderUnsigned(hash, PILLAR_CHANCE) != 0) {
+            return 0;
+        }
+        return Math.max(0, (int) ((hash >>> 40) & 3) - 1);
+    }
+
+    /**
+     * SplitMix64 finalizer.
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -1,27 +1,122 @@
 package dev.arisu.demoecs.terrain;
 
+import dev.arisu.demoecs.terrain.region.RegionStorage;
+import dev.arisu.demoecs.util.LongMap;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.stream.IntStream;
 
-public class Terrain {
+/**
+ * Blocks of the world: chunks of a {@link TerrainGenerator}, with edits on top.
+ * <p>
+ * Nothing is generated up front. Chunks that were neither edited nor {@link #generate generated}
+ * yet are read straight from the generator, which gives the same blocks; they are only stored
+ * once edited, or when generated ahead of time in parallel to make reads cheaper.
+ * <p>
+ * Terrain with a {@link RegionStorage} keeps edited chunks on disk. Saved chunks are only kept in
+ * memory once {@link #generate} loads them or they are edited again; reading one that isn't
+ * loaded decodes it once and keeps it among the last {@link #DECODED_CHUNKS} chunks read that way.
+ * {@link #unloadOutside} saves and drops chunks far from the player, {@link #save()} saves every
+ * edited chunk that is still loaded.
+ * <p>
+ * Edits are reported to {@link TerrainListener}s, for the edited chunk and for neighbours it
+ * borders on.
+ * <p>
+ * Reads may come from any number of threads as long as no thread modifies the terrain.
+ */
+public class Terrain implements BlockView {
 
-    private final byte[][][] blocks = new byte[256][256][128];
+    private static final int KEY_BITS = 21;
+    private static final long KEY_MASK = (1L << KEY_BITS) - 1;
+
+    private static final String SEED_FILE = "seed";
+
+    /// NOTE: enough for the border chunks of a meshed column and bodies wandering off the loaded area
+    static final int DECODED_CHUNKS = 64;
+
+    /// NOTE: chunks missing from the map are read from storage if saved there, else from the generator
+    private final LongMap<Chunk> chunks = new LongMap<>();
+
+    private final TerrainGenerator generator;
+
+    /// NOTE: null if the terrain isn't saved anywhere
+    private final RegionStorage storage;
+
+    /// NOTE: chunks saved in storage, loaded or not
+    private final LongMap<Boolean> saved = new LongMap<>();
+
+    /// NOTE: chunks edited since they were last saved, including removed ones
+    private final LongMap<Boolean> dirty = new LongMap<>();
+
+    /// NOTE: saved chunks read while not loaded, least recently read first; never modified,
+    /// dropped once their chunk is loaded again
+    private final Map<Long, Chunk> decoded = new LinkedHashMap<Long, Chunk>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Chunk> eldest) {
+            return size() > DECODED_CHUNKS;
+        }
+    };
+
+    private final List<TerrainListener> listeners = new ArrayList<>();
+
+    private int nonEmptyChunks;
 
     public Terrain() {
-        Random rand = new Random();
-        for (int x = -128; x < 128; ++x) {
-            for (int y = -128; y < 128; ++y) {
+        this(new Random().nextLong());
+    }
 
-                setBlock(x, y, 0);
+    /**
+     * Demo terrain of {@link PillarGenerator}, the same for the same seed.
+     */
+    public Terrain(long seed) {
+        this(new PillarGenerator(seed));
+        buildSpawn();
+    }
 
-                if (rand.nextInt(15) != 0) {
-                    continue;
-                }
+    public Terrain(TerrainGenerator generator) {
+        this.generator = generator;
+        this.storage = null;
+    }
 
-                for (int z = 1, zLimit = rand.nextInt(4); z < zLimit; ++z) {
-                    setBlock(x, y, z);
-                }
-            }
+    /**
+     * Terrain of the generator with chunks saved in the storage on top.
+     */
+    public Terrain(TerrainGenerator generator, RegionStorage storage) throws IOException {
+        this.generator = generator;
+        this.storage = storage;
+        storage.forEachChunk((cx, cy, cz) -> saved.put(chunkKey(cx, cy, cz), Boolean.TRUE));
+    }
+
+    /**
+     * Demo terrain saved in the directory. A new world is created with the given seed,
+     * an existing one is opened with the seed it was created with.
+     */
+    public static Terrain open(Path directory, long seed) throws IOException {
+        final RegionStorage storage = new RegionStorage(directory);
+        final Path seedFile = directory.resolve(SEED_FILE);
+
+        final boolean created = !Files.exists(seedFile);
+        if (created) {
+            Files.write(seedFile, Long.toString(seed).getBytes(StandardCharsets.UTF_8));
+        } else {
+            seed = Long.parseLong(new String(Files.readAllBytes(seedFile), StandardCharsets.UTF_8).trim());
         }
+
+        final Terrain terrain = new Terrain(new PillarGenerator(seed), storage);
+        if (created) {
+            terrain.buildSpawn();
+        }
+        return terrain;
+    }
+
+    private void buildSpawn() {
         resetBlock(0, 0, 1);
         resetBlock(0, 0, 2);
 
@@ -42,22 +137,305 @@ public class Terrain {
         resetBlock(3, 2, 3);
     }
 
+    /**
+     * Packs chunk coordinates into a single map key, 21 bits per axis.
+     */
+    public static long chunkKey(int cx, int cy, int cz) {
+        return ((cx & KEY_MASK) << (2 * KEY_BITS)) | ((cy & KEY_MASK) << KEY_BITS) | (cz & KEY_MASK);
+    }
+
+    @Override
     public byte getBlock(int x, int y, int z) {
-        if (x < -128 || x >= 128 || y < -128 || y >= 128 || z < 0 || z >= 128) {
-            return 0;
+        final Chunk chunk = chunks.get(chunkKey(
+                x >> Chunk.SIZE_BITS, y >> Chunk.SIZE_BITS, z >> Chunk.SIZE_BITS));
+        if (chunk == null) {
+            return unloadedBlock(x, y, z);
         }
-        return blocks[x + 128][y + 128][z];
+        return chunk.getBlock(x & Chunk.MASK, y & Chunk.MASK, z & Chunk.MASK);
     }
 
-    public boolean hasBlock(int x, int y, int z) {
-        return getBlock(x, y, z) != 0;
+    @Override
+    public int getRow(int x, int y, int z) {
+        final int cx = x >> Chunk.SIZE_BITS, cy = y >> Chunk.SIZE_BITS, cz = z >> Chunk.SIZE_BITS;
+        final long key = chunkKey(cx, cy, cz);
+        Chunk chunk = chunks.get(key);
+        if (chunk == null) {
+            if (!saved.containsKey(key)) {
+                return generator.getRow(x, y, z);
+            }
+            chunk = decoded(key, cx, cy, cz);
+        }
+        return chunk.getRow(y & Chunk.MASK, z & Chunk.MASK);
     }
 
     public void setBlock(int x, int y, int z) {
-        blocks[x + 128][y + 128][z] = 1;
+        putBlock(x, y, z, (byte) 1);
     }
 
     public void resetBlock(int x, int y, int z) {
-        blocks[x + 128][y + 128][z] = 0;
+        putBlock(x, y, z, (byte) 0);
+    }
+
+    public void addListener(TerrainListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(TerrainListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Copies every chunk intersecting the given block box (bounds inclusive).
+     */
+    public TerrainSnapshot snapshot(int minX, int minY, int minZ,
+                                    int maxX, int maxY, int maxZ) {
+        final int minCX = minX >> Chunk.SIZE_BITS, maxCX = maxX >> Chunk.SIZE_BITS;
+        final int minCY = minY >> Chunk.SIZE_BITS, maxCY = maxY >> Chunk.SIZE_BITS;
+        final int minCZ = minZ >> Chunk.SIZE_BITS, maxCZ = maxZ >> Chunk.SIZE_BITS;
+        final int sizeX = maxCX - minCX + 1;
+        final int sizeY = maxCY - minCY + 1;
+        final int sizeZ = maxCZ - minCZ + 1;
+
+        final Chunk[] copies = new Chunk[sizeX * sizeY * sizeZ];
+        for (int cz = 0; cz < sizeZ; ++cz) {
+            for (int cy = 0; cy < sizeY; ++cy) {
+                for (int cx = 0; cx < sizeX; ++cx) {
+                    final long key = chunkKey(minCX + cx, minCY + cy, minCZ + cz);
+                    final Chunk chunk = chunks.get(key);
+                    if (chunk != null) {
+                        copies[(cz * sizeY + cy) * sizeX + cx] = chunk.copy();
+                    } else if (saved.containsKey(key)) {
+                        copies[(cz * sizeY + cy) * sizeX + cx] = decoded(key, minCX + cx, minCY + cy, minCZ + cz);
+                    }
+                }
+            }
+        }
+        return new TerrainSnapshot(minCX, minCY, minCZ, sizeX, sizeY, sizeZ, copies, generator);
+    }
+
+    /**
+     * Loads from storage or generates every chunk of the given chunk box (bounds inclusive) that
+     * isn't loaded yet, in parallel. Doesn't change any block, only makes reading them cheaper.
+     */
+    public void generate(int minCX, int minCY, int minCZ,
+                         int maxCX, int maxCY, int maxCZ) {
+        final int sizeX = maxCX - minCX + 1;
+        final int sizeY = maxCY - minCY + 1;
+        final int sizeZ = maxCZ - minCZ + 1;
+
+        final Chunk[] generated = new Chunk[sizeX * sizeY * sizeZ];
+        IntStream.range(0, generated.length).parallel().forEach(i -> {
+            final int cx = minCX + i % sizeX;
+            final int cy = minCY + i / sizeX % sizeY;
+            final int cz = minCZ + i / (sizeX * sizeY);
+            if (!chunks.containsKey(chunkKey(cx, cy, cz))) {
+                generated[i] = loadOrGenerate(cx, cy, cz);
+            }
+        });
+
+        for (int i = 0; i < generated.length; ++i) {
+            if (generated[i] != null) {
+                put(chunkKey(minCX + i % sizeX, minCY + i / sizeX % sizeY, minCZ + i / (sizeX * sizeY)),
+                        generated[i]);
+            }
+        }
+    }
+
+    /**
+     * Drops every loaded chunk outside of the given chunk box (bounds inclusive), saving edited
+     * ones first. Without storage, edited chunks are kept.
+     */
+    public void unloadOutside(int minCX, int minCY, int minCZ,
+                              int maxCX, int maxCY, int maxCZ) {
+        final ArrayList<Long> outside = new ArrayList<>();
+        chunks.forEach((key, chunk) -> {
+            final int cx = keyX(key), cy = keyY(key), cz = keyZ(key);
+            if (cx < minCX || cx > maxCX || cy < minCY || cy > maxCY || cz < minCZ || cz > maxCZ) {
+                outside.add(key);
+            }
+        });
+
+        for (long key : outside) {
+            if (dirty.containsKey(key)) {
+                if (storage == null) {
+                    continue;
+                }
+                save(key);
+            }
+            if (!chunks.remove(key).isEmpty()) {
+                nonEmptyChunks--;
+            }
+        }
+    }
+
+    /**
+     * Hands every chunk edited since it was last saved to the storage, which writes them in the
+     * background. Does nothing without storage.
+     */
+    public void save() {
+        if (storage == null) {
+            return;
+        }
+        final ArrayList<Long> edited = new ArrayList<>(dirty.size());
+        dirty.forEach((key, value) -> edited.add(key));
+        for (long key : edited) {
+            save(key);
+        }
+    }
+
+    /**
+     * Saves every edited chunk and waits for storage to write them and close.
+     */
+    public void close() throws IOException {
+        if (storage == null) {
+            return;
+        }
+        save();
+        storage.close();
+    }
+
+    /**
+     * @return number of loaded chunks that hold at least one non-air block.
+     */
+    public int getChunkCount() {
+        return nonEmptyChunks;
+    }
+
+    private void putBlock(int x, int y, int z, byte block) {
+        final int cx = x >> Chunk.SIZE_BITS, cy = y >> Chunk.SIZE_BITS, cz = z >> Chunk.SIZE_BITS;
+        final long key = chunkKey(cx, cy, cz);
+        final int lx = x & Chunk.MASK, ly = y & Chunk.MASK, lz = z & Chunk.MASK;
+
+        final Chunk stored = chunks.get(key);
+        final Chunk chunk = stored != null ? stored : loadOrGenerate(cx, cy, cz);
+
+        if (chunk.getBlock(lx, ly, lz) == block) {
+            return;
+        }
+
+        /// NOTE: counted again below, the chunk may be modified in place
+        if (stored != null && !stored.isEmpty()) {
+            nonEmptyChunks--;
+        }
+
+        final Chunk mutable = chunk.toMutable();
+        mutable.setBlock(lx, ly, lz, block);
+
+        final Chunk compacted = mutable.compact();
+        if (compacted.isEmpty() && generator.generate(cx, cy, cz).isEmpty()) {
+            // the generator gives the same air, no need to keep the chunk
+            chunks.remove(key);
+            forgetDecoded(key);
+            if (saved.remove(key) != null) {
+                dirty.put(key, Boolean.TRUE);
+            } else {
+                dirty.remove(key);
+            }
+        } else {
+            put(key, compacted);
+            dirty.put(key, Boolean.TRUE);
+        }
+        notifyChanged(cx, cy, cz, lx, ly, lz);
+    }
+
+    private void notifyChanged(int cx, int cy, int cz, int lx, int ly, int lz) {
+        for (TerrainListener listener : listeners) {
+            listener.chunkChanged(cx, cy, cz);
+
+            /// NOTE: faces of the neighbour touching the block may have appeared or disappeared
+            if (lx == 0) {
+                listener.chunkChanged(cx - 1, cy, cz);
+            } else if (lx == Chunk.MASK) {
+                listener.chunkChanged(cx + 1, cy, cz);
+            }
+            if (ly == 0) {
+                listener.chunkChanged(cx, cy - 1, cz);
+            } else if (ly == Chunk.MASK) {
+                listener.chunkChanged(cx, cy + 1, cz);
+            }
+            if (lz == 0) {
+                listener.chunkChanged(cx, cy, cz - 1);
+            } else if (lz == Chunk.MASK) {
+                listener.chunkChanged(cx, cy, cz + 1);
+            }
+        }
+    }
+
+    private byte unloadedBlock(int x, int y, int z) {
+        final int cx = x >> Chunk.SIZE_BITS, cy = y >> Chunk.SIZE_BITS, cz = z >> Chunk.SIZE_BITS;
+        final long key = chunkKey(cx, cy, cz);
+        if (!saved.containsKey(key)) {
+            return generator.getBlock(x, y, z);
+        }
+        return decoded(key, cx, cy, cz).getBlock(x & Chunk.MASK, y & Chunk.MASK, z & Chunk.MASK);
+    }
+
+    /**
+     * @return saved chunk that isn't loaded, decoded once for any number of reads. Must not be
+     * modified, {@link #loadOrGenerate} gives a chunk of its own.
+     */
+    private Chunk decoded(long key, int cx, int cy, int cz) {
+        synchronized (decoded) {
+            final Chunk chunk = decoded.get(key);
+            if (chunk != null) {
+                return chunk;
+            }
+        }
+        /// NOTE: decoded outside of the lock, two threads may both decode the same chunk
+        final Chunk chunk = loadOrGenerate(cx, cy, cz);
+        synchronized (decoded) {
+            decoded.put(key, chunk);
+        }
+        return chunk;
+    }
+
+    private void forgetDecoded(long key) {
+        synchronized (decoded) {
+            decoded.remove(key);
+        }
+    }
+
+    private Chunk loadOrGenerate(int cx, int cy, int cz) {
+        if (saved.containsKey(chunkKey(cx, cy, cz))) {
+            final Chunk chunk = storage.load(cx, cy, cz);
+            /// NOTE: null if storage lost it, read as if it was never saved
+            if (chunk != null) {
+                return chunk;
+            }
+        }
+        return generator.generate(cx, cy, cz);
+    }
+
+    private void save(long key) {
+        final int cx = keyX(key), cy = keyY(key), cz = keyZ(key);
+        final Chunk chunk = chunks.get(key);
+        if (chunk != null) {
+            storage.save(cx, cy, cz, chunk);
+            saved.put(key, Boolean.TRUE);
+        } else {
+            storage.delete(cx, cy, cz);
+        }
+        dirty.remove(key);
+    }
+
+    /// NOTE: inverse of `chunkKey`, sign-extending every 21-bit coordinate
+    private static int keyX(long key) {
+        return (int) (key << (64 - 3 * KEY_BITS) >> (64 - KEY_BITS));
+    }
+
+    private static int keyY(long key) {
+        return (int) (key << (64 - 2 * KEY_BITS) >> (64 - KEY_BITS));
+    }
+
+    private static int keyZ(long key) {
+        return (int) (key << (64 - KEY_BITS) >> (64 - KEY_BITS));
+    }
+
+    private void put(long key, Chunk chunk) {
+        chunks.put(key, chunk);
+        forgetDecoded(key);
+        if (!chunk.isEmpty()) {
+            nonEmptyChunks++;
+        }
     }
 }
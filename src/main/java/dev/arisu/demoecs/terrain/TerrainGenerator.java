@@ -0,0 +1,37 @@
+package dev.arisu.demoecs.terrain;
+
+/**
+ * Blocks of a generated world, as a pure function of coordinates: the same block for the same
+ * coordinates, whatever was generated before, so any chunk can be generated on its own, on any
+ * thread. Implementations must be immutable.
+ */
+@FunctionalInterface
+public interface TerrainGenerator extends BlockView {
+
+    /// NOTE: nothing but air
+    TerrainGenerator AIR = (x, y, z) -> 0;
+
+    /**
+     * @return chunk of the given chunk coordinates, compacted.
+     */
+    default Chunk generate(int cx, int cy, int cz) {
+        final int minX = cx << Chunk.SIZE_BITS, minY = cy << Chunk.SIZE_BITS, minZ = cz << Chunk.SIZE_BITS;
+
+        Chunk chunk = null;
+        for (int z = 0; z < Chunk.SIZE; ++z) {
+            for (int y = 0; y < Chunk.SIZE; ++y) {
+                for (int x = 0; x < Chunk.SIZE; ++x) {
+                    final byte block = getBlock(minX + x, minY + y, minZ + z);
+                    if (block == 0) {
+                        continue;
+                    }
+                    if (chunk == null) {
+                        chunk = Chunk.uniform((byte) 0).toMutable();
+                    }
+                    chunk.setBlock(x, y, z, block);
+                }
+            }
+        }
+        return chunk != null ? chunk.compact() : Chunk.uniform((byte) 0);
+    }
+}
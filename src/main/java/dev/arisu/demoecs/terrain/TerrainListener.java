@@ -0,0 +1,13 @@
+package dev.arisu.demoecs.terrain;
+
+/**
+ * Notified of {@link Terrain} edits, on the thread making them.
+ */
+@FunctionalInterface
+public interface TerrainListener {
+    /**
+     * A block of the chunk changed, or a block right next to one of its faces. Called once per
+     * edited block, listeners coalesce edits themselves.
+     */
+    void chunkChanged(int cx, int cy, int cz);
+}
@@ -0,0 +1,57 @@
+package dev.arisu.demoecs.terrain;
+
+/**
+ * Immutable copy of a box of chunks, safe to read from worker threads while
+ * the source {@link Terrain} keeps changing. Blocks outside of the box read as air.
+ * Chunks the terrain didn't store yet are read from its generator, so they are
+ * generated on the thread reading the snapshot.
+ */
+public final class TerrainSnapshot implements BlockView {
+    private final int minCX, minCY, minCZ;
+    private final int sizeX, sizeY, sizeZ;
+    private final Chunk[] chunks;
+    private final TerrainGenerator generator;
+
+    TerrainSnapshot(int minCX, int minCY, int minCZ,
+                    int sizeX, int sizeY, int sizeZ,
+                    Chunk[] chunks, TerrainGenerator generator) {
+        this.minCX = minCX;
+        this.minCY = minCY;
+        this.minCZ = minCZ;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.chunks = chunks;
+        this.generator = generator;
+    }
+
+    @Override
+    public byte getBlock(int x, int y, int z) {
+        final int cx = (x >> Chunk.SIZE_BITS) - minCX;
+        final int cy = (y >> Chunk.SIZE_BITS) - minCY;
+        final int cz = (z >> Chunk.SIZE_BITS) - minCZ;
+        if (cx < 0 || cx >= sizeX || cy < 0 || cy >= sizeY || cz < 0 || cz >= sizeZ) {
+            return 0;
+        }
+        final Chunk chunk = chunks[(cz * sizeY + cy) * sizeX + cx];
+        if (chunk == null) {
+            return generator.getBlock(x, y, z);
+        }
+        return chunk.getBlock(x & Chunk.MASK, y & Chunk.MASK, z & Chunk.MASK);
+    }
+
+    @Override
+    public int getRow(int x, int y, int z) {
+        final int cx = (x >> Chunk.SIZE_BITS) - minCX;
+        final int cy = (y >> Chunk.SIZE_BITS) - minCY;
+        final int cz = (z >> Chunk.SIZE_BITS) - minCZ;
+        if (cx < 0 || cx >= sizeX || cy < 0 || cy >= sizeY || cz < 0 || cz >= sizeZ) {
+            return 0;
+        }
+        final Chunk chunk = chunks[(cz * sizeY + cy) * sizeX + cx];
+        if (chunk == null) {
+            return generator.getRow(x, y, z);
+        }
+        return chunk.getRow(y & Chunk.MASK, z & Chunk.MASK);
+    }
+}
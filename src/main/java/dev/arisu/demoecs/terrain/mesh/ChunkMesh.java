@@ -0,0 +1,50 @@
+package dev.arisu.demoecs.terrain.mesh;
+
+import java.nio.ByteBuffer;
+import lombok.Getter;
+
+/**
+ * CPU-side vertex data of a single chunk column, ready to be uploaded to the GPU.
+ */
+@Getter
+public final class ChunkMesh {
+    private final int chunkX;
+    private final int chunkY;
+    private final ByteBuffer vertices;
+    private final int quads;
+
+    /// NOTE: faces connected through air, one entry per section from the bottom, see OcclusionCuller
+    private final long[] visibility;
+
+    /// NOTE: set by ChunkMeshPipeline, tells meshes of the same column apart
+    private long sequence;
+
+    public ChunkMesh(int chunkX, int chunkY, ByteBuffer vertices, int quads, long[] visibility) {
+        this.chunkX = chunkX;
+        this.chunkY = chunkY;
+        this.vertices = vertices;
+        this.quads = quads;
+        this.visibility = visibility;
+    }
+
+    /**
+     * @return mesh standing for a submit that failed, without vertices or visibility.
+     */
+    static ChunkMesh failed(int chunkX, int chunkY, long sequence) {
+        final ChunkMesh mesh = new ChunkMesh(chunkX, chunkY, null, 0, null);
+        mesh.setSequence(sequence);
+        return mesh;
+    }
+
+    public boolean isFailed() {
+        return vertices == null;
+    }
+
+    void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public int getVertexCount() {
+        return quads * 4;
+    }
+}
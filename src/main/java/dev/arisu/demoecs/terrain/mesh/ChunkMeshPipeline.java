@@ -0,0 +1,127 @@
+package dev.arisu.demoecs.terrain.mesh;
+
+import dev.arisu.demoecs.terrain.Terrain;
+import dev.arisu.demoecs.terrain.TerrainSnapshot;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Meshes chunk columns on a pool of worker threads.
+ * <p>
+ * {@link #submit(int, int)} snapshots the neighbourhood of the chunk on the calling thread,
+ * so the terrain may be modified while meshing is in progress. Finished meshes are handed
+ * back through a lock-free queue and picked up with {@link #poll()}; once uploaded, their
+ * buffers should be returned with {@link #recycle(ChunkMesh)}.
+ * <p>
+ * Distant columns may be submitted at a coarser level of detail, see {@link LodView}; such meshes
+ * are always greedy, as merging faces of whole cells is what makes them cheaper to draw.
+ * <p>
+ * Meshes may finish in any order. Every submit is numbered, so that a column submitted again
+ * can tell an outdated mesh from the latest one by {@link ChunkMesh#getSequence()}.
+ */
+public final class ChunkMeshPipeline implements AutoCloseable {
+    /// NOTE: coarsest level of detail, cells of 2^MAX_LOD blocks
+    public static final int MAX_LOD = 3;
+
+    private final Terrain terrain;
+    private final ExecutorService executor;
+    private final MeshBufferPool bufferPool = new MeshBufferPool();
+    private final ThreadLocal<ChunkMesher> meshers;
+    private final ThreadLocal<ChunkMesher> lodMeshers;
+
+    private final Queue<ChunkMesh> completed = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /// NOTE: only the submitting thread touches it
+    private long submitted;
+
+    public ChunkMeshPipeline(Terrain terrain, MeshingMode mode) {
+        this(terrain, mode, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    public ChunkMeshPipeline(Terrain terrain, MeshingMode mode, int threads) {
+        this.terrain = terrain;
+        this.meshers = ThreadLocal.withInitial(() -> new ChunkMesher(mode, bufferPool));
+        this.lodMeshers = mode == MeshingMode.GREEDY
+                ? meshers
+                : ThreadLocal.withInitial(() -> new ChunkMesher(MeshingMode.GREEDY, bufferPool));
+
+        final AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "chunk-mesher-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public long submit(int chunkX, int chunkY) {
+        return submit(chunkX, chunkY, 0);
+    }
+
+    /**
+     * @param lod level of detail, blocks are merged into cells of 2<sup>lod</sup> blocks along x and y,
+     *            from 0 up to {@link #MAX_LOD}
+     * @return sequence number the mesh of this submit will carry, starting from 1.
+     */
+    public long submit(int chunkX, int chunkY, int lod) {
+        final int minX = chunkX * ChunkMesher.SIZE;
+        final int minY = chunkY * ChunkMesher.SIZE;
+
+        // one block of border on each side is needed to decide which faces are exposed,
+        // a coarser cell of the border never reaches past the neighbouring chunk
+        final TerrainSnapshot snapshot = terrain.snapshot(
+                minX - 1, minY - 1, -1,
+                minX + ChunkMesher.SIZE, minY + ChunkMesher.SIZE, ChunkMesher.HEIGHT);
+
+        final long sequence = ++submitted;
+        pending.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                final ChunkMesh mesh = lod == 0
+                        ? meshers.get().mesh(snapshot, chunkX, chunkY)
+                        : lodMeshers.get().mesh(new LodView(snapshot, 1 << lod), chunkX, chunkY);
+                mesh.setSequence(sequence);
+                completed.offer(mesh);
+            } catch (RuntimeException e) {
+                System.err.println("Meshing column " + chunkX + " " + chunkY + " failed");
+                e.printStackTrace();
+                completed.offer(ChunkMesh.failed(chunkX, chunkY, sequence));
+            } finally {
+                pending.decrementAndGet();
+            }
+        });
+        return sequence;
+    }
+
+    /**
+     * @return next finished mesh, or {@code null} if none are ready yet. A submit that failed
+     * to mesh is reported by a mesh without vertices, see {@link ChunkMesh#isFailed()}.
+     */
+    public ChunkMesh poll() {
+        return completed.poll();
+    }
+
+    /**
+     * Returns vertex buffer of the mesh to the pool. The mesh must not be used afterwards.
+     */
+    public void recycle(ChunkMesh mesh) {
+        if (!mesh.isFailed()) {
+            bufferPool.release(mesh.getVertices());
+        }
+    }
+
+    /**
+     * @return number of submitted chunks that are still being meshed.
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
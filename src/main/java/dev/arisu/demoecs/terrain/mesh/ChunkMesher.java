@@ -0,0 +1,465 @@
+package dev.arisu.demoecs.terrain.mesh;
+
+import dev.arisu.demoecs.terrain.BlockView;
+import dev.arisu.demoecs.terrain.Chunk;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Builds vertex data for a {@link #SIZE}x{@link #SIZE}x{@link #HEIGHT} column of blocks.
+ * Each quad has 4 vertices, each vertex is packed into {@link #BYTES_PER_VERTEX} unsigned bytes:
+ * <pre>
+ * x, y, z  column-local position, the column origin is passed to the shader as a uniform
+ * w        face index (bits 0-2) and palette color index (bits 3-7)
+ * </pre>
+ * Colors are looked up in {@link #PALETTE} by the vertex shader.
+ * <p>
+ * Blocks are read a row at a time as occupancy bits, see {@link BlockView#getRow}, and exposed
+ * faces of a whole row are found with a shift and an AND-NOT against the neighbouring row.
+ * <p>
+ * Quads are written straight into a reusable scratch buffer and then copied into a buffer
+ * from the {@link MeshBufferPool}, so meshing a chunk doesn't allocate per voxel.
+ * A mesher is not thread-safe, but doesn't touch OpenGL, so it can run on any thread.
+ *
+ * @see MeshingMode
+ */
+public final class ChunkMesher {
+    public static final int SIZE = Chunk.SIZE;
+    public static final int HEIGHT = 64;
+
+    /// NOTE: cubic sections of a column, the unit of occlusion culling
+    public static final int SECTIONS = HEIGHT / SIZE;
+
+    public static final int BYTES_PER_VERTEX = 4;
+    public static final int BYTES_PER_QUAD = 4 * BYTES_PER_VERTEX;
+
+    private static final int MAX_FACES = SIZE * SIZE * HEIGHT * 6;
+
+    /// NOTE: extent of the column along x, y and z
+    private static final int[] DIMS = {SIZE, SIZE, HEIGHT};
+
+    /// NOTE: faces are ordered as bottom, top, east (+x), west (-x), north (+y), south (-y);
+    /// axis along the face normal, and the two axes spanning the face
+    private static final int[] FACE_AXIS = {2, 2, 0, 0, 1, 1};
+    private static final int[] FACE_AXIS_U = {0, 0, 1, 1, 0, 0};
+    private static final int[] FACE_AXIS_V = {1, 1, 2, 2, 2, 2};
+
+    /// NOTE: corner offsets of each face, 4 vertices by 3 coordinates
+    private static final int[][] FACE_CORNERS = {
+            {1, 0, 0, 0, 0, 0, 0, 1, 0, 1, 1, 0},
+            {1, 0, 1, 1, 1, 1, 0, 1, 1, 0, 0, 1},
+            {1, 0, 0, 1, 1, 0, 1, 1, 1, 1, 0, 1},
+            {0, 0, 1, 0, 1, 1, 0, 1, 0, 0, 0, 0},
+            {1, 1, 1, 1, 1, 0, 0, 1, 0, 0, 1, 1},
+            {1, 0, 0, 1, 0, 1, 0, 0, 1, 0, 0, 0},
+    };
+
+    /**
+     * RGB colors addressed by the palette color index of a vertex, up to 32 entries.
+     * For now the color only depends on the face, so index {@code i} is the color of face {@code i}.
+     */
+    public static final float[] PALETTE = {
+            0.5f, 0.0f, 0.0f,
+            0.25f, 0.125f, 0.0f,
+            0.0f, 0.5f, 0.0f,
+            0.5f, 0.5f, 0.5f,
+            0.0f, 0.0f, 0.5f,
+            0.5f, 0.0f, 0.5f,
+    };
+
+    private final MeshingMode mode;
+    private final MeshBufferPool pool;
+    private final ByteBuffer scratch = MeshBufferPool.allocate(MAX_FACES * BYTES_PER_QUAD);
+
+    /// NOTE: occupancy of every row along x of the column and its one-block border, bit `x + 1`
+    /// for the block at `x`, so bits 0 and `SIZE + 1` are the border
+    private final int[] rows = new int[(SIZE + 2) * (HEIGHT + 2)];
+    private final int[] faceBits = new int[6];
+
+    /// NOTE: block ids of the solid blocks of the column, bits of the exposed faces of one
+    /// direction for every row, and block id of every exposed face in a slice, all used by
+    /// greedy meshing
+    private final byte[] column = new byte[(SIZE + 2) * (SIZE + 2) * (HEIGHT + 2)];
+    private final int[] faceRows = new int[SIZE * HEIGHT];
+    private final byte[] mask = new byte[SIZE * HEIGHT];
+    /// NOTE: flood fill state of sectionVisibility: air already reached in every row of the
+    /// section, and rows still to spread from with the bits they were entered at
+    private final int[] reached = new int[SIZE * SIZE];
+    private final int[] fillRows = new int[SIZE * SIZE * SIZE];
+    private final int[] fillBits = new int[SIZE * SIZE * SIZE];
+
+    private final int[] pos = new int[3];
+    private final int[] extent = new int[3];
+
+    public ChunkMesher() {
+        this(MeshingMode.NAIVE, new MeshBufferPool());
+    }
+
+    public ChunkMesher(MeshingMode mode, MeshBufferPool pool) {
+        this.mode = mode;
+        this.pool = pool;
+    }
+
+    public ChunkMesh mesh(BlockView blocks, int chunkX, int chunkY) {
+        final ByteBuffer verticesBuf = scratch;
+        verticesBuf.clear();
+
+        final int quads = mode == MeshingMode.GREEDY
+                ? meshGreedy(blocks, chunkX * SIZE, chunkY * SIZE)
+                : meshNaive(blocks, chunkX * SIZE, chunkY * SIZE);
+
+        verticesBuf.flip();
+
+        final ByteBuffer result = pool.acquire(verticesBuf.remaining());
+        result.put(verticesBuf).flip();
+
+        final long[] visibility = new long[SECTIONS];
+        for (int section = 0; section < SECTIONS; ++section) {
+            visibility[section] = sectionVisibility(section * SIZE);
+        }
+
+        return new ChunkMesh(chunkX, chunkY, result, quads, visibility);
+    }
+
+    private int meshNaive(BlockView blocks, int minX, int minY) {
+        readRows(blocks, minX, minY);
+
+        int faces = 0;
+
+        for (int z = 0; z < HEIGHT; ++z) {
+            for (int y = 0; y < SIZE; ++y) {
+                if (rows[rowIndex(y, z)] == 0) {
+                    continue;
+                }
+
+                int any = 0;
+                for (int face = 0; face < 6; ++face) {
+                    faceBits[face] = exposed(face, y, z);
+                    any |= faceBits[face];
+                }
+
+                for (; any != 0; any &= any - 1) {
+                    final int x = Integer.numberOfTrailingZeros(any);
+                    for (int face = 0; face < 6; ++face) {
+                        if ((faceBits[face] >>> x & 1) != 0) {
+                            putQuad(scratch, face, x, y, z, 1, 1, 1);
+                            faces++;
+                        }
+                    }
+                }
+            }
+        }
+        return faces;
+    }
+
+    /**
+     * For every face direction, walks the column slice by slice, collects exposed faces of the
+     * slice into a 2D mask and covers the mask with as few rectangles as possible, growing each
+     * rectangle first along U, then along V.
+     */
+    private int meshGreedy(BlockView blocks, int minX, int minY) {
+        readRows(blocks, minX, minY);
+
+        // block ids only matter where a face may be exposed, air is never read back
+        for (int z = 0; z < HEIGHT; ++z) {
+            for (int y = 0; y < SIZE; ++y) {
+                for (int row = rows[rowIndex(y, z)] >>> 1 & Chunk.ROW_MASK; row != 0; row &= row - 1) {
+                    final int x = Integer.numberOfTrailingZeros(row);
+                    column[columnIndex(x, y, z)] = blocks.getBlock(minX + x, minY + y, z);
+                }
+            }
+        }
+
+        int quads = 0;
+
+        for (int face = 0; face < 6; ++face) {
+            final int axis = FACE_AXIS[face], u = FACE_AXIS_U[face], v = FACE_AXIS_V[face];
+            final int du = DIMS[u], dv = DIMS[v];
+
+            int exposedAny = 0;
+            for (int z = 0; z < HEIGHT; ++z) {
+                for (int y = 0; y < SIZE; ++y) {
+                    final int bits = rows[rowIndex(y, z)] == 0 ? 0 : exposed(face, y, z);
+                    faceRows[z * SIZE + y] = bits;
+                    exposedAny |= bits;
+                }
+            }
+            if (exposedAny == 0) {
+                continue;
+            }
+
+            for (int slice = 0; slice < DIMS[axis]; ++slice) {
+                if (!fillMask(axis, slice, du * dv)) {
+                    continue;
+                }
+
+                for (int j = 0; j < dv; ++j) {
+                    for (int i = 0; i < du; ) {
+                        final byte block = mask[j * du + i];
+                        if (block == 0) {
+                            ++i;
+                            continue;
+                        }
+
+                        int w = 1;
+                        while (i + w < du && mask[j * du + i + w] == block) {
+                            ++w;
+                        }
+
+                        int h = 1;
+                        grow:
+                        while (j + h < dv) {
+                            for (int k = 0; k < w; ++k) {
+                                if (mask[(j + h) * du + i + k] != block) {
+                                    break grow;
+                                }
+                            }
+                            ++h;
+                        }
+
+                        for (int l = 0; l < h; ++l) {
+                            for (int k = 0; k < w; ++k) {
+                                mask[(j + l) * du + i + k] = 0;
+                            }
+                        }
+
+                        pos[axis] = slice;
+                        pos[u] = i;
+                        pos[v] = j;
+                        extent[axis] = 1;
+                        extent[u] = w;
+                        extent[v] = h;
+                        putQuad(scratch, face, pos[0], pos[1], pos[2], extent[0], extent[1], extent[2]);
+                        quads++;
+
+                        i += w;
+                    }
+                }
+            }
+        }
+        return quads;
+    }
+
+    /**
+     * Fills {@link #mask} with block ids of the exposed faces of a slice, from {@link #faceRows}.
+     *
+     * @return whether any face of the slice is exposed.
+     */
+    private boolean fillMask(int axis, int slice, int size) {
+        Arrays.fill(mask, 0, size, (byte) 0);
+        boolean any = false;
+
+        if (axis == 2) {
+            // U is x, V is y
+            for (int y = 0; y < SIZE; ++y) {
+                for (int bits = faceRows[slice * SIZE + y]; bits != 0; bits &= bits - 1) {
+                    final int x = Integer.numberOfTrailingZeros(bits);
+                    mask[y * SIZE + x] = column[columnIndex(x, y, slice)];
+                    any = true;
+                }
+            }
+        } else if (axis == 1) {
+            // U is x, V is z
+            for (int z = 0; z < HEIGHT; ++z) {
+                for (int bits = faceRows[z * SIZE + slice]; bits != 0; bits &= bits - 1) {
+                    final int x = Integer.numberOfTrailingZeros(bits);
+                    mask[z * SIZE + x] = column[columnIndex(x, slice, z)];
+                    any = true;
+                }
+            }
+        } else {
+            // U is y, V is z
+            for (int z = 0; z < HEIGHT; ++z) {
+                for (int y = 0; y < SIZE; ++y) {
+                    if ((faceRows[z * SIZE + y] >>> slice & 1) != 0) {
+                        mask[z * SIZE + y] = column[columnIndex(slice, y, z)];
+                        any = true;
+                    }
+                }
+            }
+        }
+        return any;
+    }
+
+    /**
+     * Reads occupancy of every row of the column into {@link #rows}, a row at a time. Blocks of
+     * the border along x are only read next to rows that aren't empty, the faces of other
+     * border rows don't matter.
+     */
+    private void readRows(BlockView blocks, int minX, int minY) {
+        for (int z = -1; z <= HEIGHT; ++z) {
+            for (int y = -1; y <= SIZE; ++y) {
+                int row = blocks.getRow(minX, minY + y, z) << 1;
+                if (row != 0 && y >= 0 && y < SIZE && z >= 0 && z < HEIGHT) {
+                    if (blocks.hasBlock(minX - 1, minY + y, z)) {
+                        row |= 1;
+                    }
+                    if (blocks.hasBlock(minX + SIZE, minY + y, z)) {
+                        row |= 1 << (SIZE + 1);
+                    }
+                }
+                rows[rowIndex(y, z)] = row;
+            }
+        }
+    }
+
+    /**
+     * Flood fills air of the section starting at {@code minZ} over the rows read by
+     * {@link #readRows}, a row span at a time.
+     *
+     * @return faces of the section connected through its air, see {@link OcclusionCuller}.
+     */
+    private long sectionVisibility(int minZ) {
+        int solid = Chunk.ROW_MASK, open = 0;
+        for (int z = 0; z < SIZE; ++z) {
+            for (int y = 0; y < SIZE; ++y) {
+                final int row = rows[rowIndex(y, minZ + z)];
+                solid &= row >>> 1;
+                open |= row >>> 1;
+            }
+        }
+        if (solid == Chunk.ROW_MASK) {
+            return 0;
+        }
+        if ((open & Chunk.ROW_MASK) == 0) {
+            return OcclusionCuller.ALL;
+        }
+
+        Arrays.fill(reached, 0);
+        long visibility = 0;
+        for (int start = 0; start < SIZE * SIZE && visibility != OcclusionCuller.ALL; ++start) {
+            for (int free = air(minZ, start) & ~reached[start]; free != 0; free &= ~reached[start]) {
+                final int seed = free & -free;
+                reached[start] |= seed;
+                fillRows[0] = start;
+                fillBits[0] = seed;
+
+                int faces = 0;
+                for (int top = 1; top > 0; ) {
+                    --top;
+                    final int index = fillRows[top];
+                    final int air = air(minZ, index);
+
+                    int span = fillBits[top];
+                    for (int grown = span; ; span = grown) {
+                        grown = (span | span << 1 | span >>> 1) & air;
+                        if (grown == span) {
+                            break;
+                        }
+                    }
+                    reached[index] |= span;
+
+                    final int y = index % SIZE, z = index / SIZE;
+                    faces |= (z == 0 ? 1 : 0) | (z == SIZE - 1 ? 1 << 1 : 0)
+                            | ((span >>> (SIZE - 1) & 1) << 2) | ((span & 1) << 3)
+                            | (y == SIZE - 1 ? 1 << 4 : 0) | (y == 0 ? 1 << 5 : 0);
+
+                    if (z > 0) {
+                        top = spread(minZ, index - SIZE, span, top);
+                    }
+                    if (z < SIZE - 1) {
+                        top = spread(minZ, index + SIZE, span, top);
+                    }
+                    if (y > 0) {
+                        top = spread(minZ, index - 1, span, top);
+                    }
+                    if (y < SIZE - 1) {
+                        top = spread(minZ, index + 1, span, top);
+                    }
+                }
+
+                for (int from = 0; from < 6; ++from) {
+                    if ((faces >>> from & 1) != 0) {
+                        visibility |= (long) faces << (from * 6);
+                    }
+                }
+            }
+        }
+        return visibility;
+    }
+
+    /**
+     * Pushes air of a row of the section next to {@code span} that wasn't reached yet.
+     */
+    private int spread(int minZ, int index, int span, int top) {
+        final int bits = span & air(minZ, index) & ~reached[index];
+        if (bits != 0) {
+            reached[index] |= bits;
+            fillRows[top] = index;
+            fillBits[top] = bits;
+            return top + 1;
+        }
+        return top;
+    }
+
+    /**
+     * @param index {@code z * SIZE + y}, local to the section starting at {@code minZ}
+     */
+    private int air(int minZ, int index) {
+        return ~(rows[rowIndex(index % SIZE, minZ + index / SIZE)] >>> 1) & Chunk.ROW_MASK;
+    }
+
+    /**
+     * @return bits of the blocks of a row of the column whose face is exposed, bit {@code x}
+     * for the block at {@code x}.
+     */
+    private int exposed(int face, int y, int z) {
+        final int row = rows[rowIndex(y, z)];
+        final int covering;
+        switch (face) {
+            case 0:
+                covering = rows[rowIndex(y, z - 1)];
+                break;
+            case 1:
+                covering = rows[rowIndex(y, z + 1)];
+                break;
+            case 2:
+                covering = row >>> 1;
+                break;
+            case 3:
+                covering = row << 1;
+                break;
+            case 4:
+                covering = rows[rowIndex(y + 1, z)];
+                break;
+            default:
+                covering = rows[rowIndex(y - 1, z)];
+                break;
+        }
+        return (row & ~covering) >>> 1 & Chunk.ROW_MASK;
+    }
+
+    /**
+     * @return index into {@link #rows} of a column-local row, each coordinate may be one block
+     * outside of the column.
+     */
+    private static int rowIndex(int y, int z) {
+        return (z + 1) * (SIZE + 2) + (y + 1);
+    }
+
+    /**
+     * @return index into {@link #column} of a column-local position, each coordinate may be
+     * one block outside of the column.
+     */
+    private static int columnIndex(int x, int y, int z) {
+        return ((z + 1) * (SIZE + 2) + (y + 1)) * (SIZE + 2) + (x + 1);
+    }
+
+    private static void putQuad(ByteBuffer buf, int face,
+                                int x, int y, int z,
+                                int ex, int ey, int ez) {
+        final int[] corners = FACE_CORNERS[face];
+        final byte w = (byte) (face | colorIndex(face) << 3);
+
+        for (int i = 0; i < 12; i += 3) {
+            buf.put((byte) (x + corners[i] * ex))
+                    .put((byte) (y + corners[i + 1] * ey))
+                    .put((byte) (z + corners[i + 2] * ez))
+                    .put(w);
+        }
+    }
+
+    private static int colorIndex(int face) {
+        return face;
+    }
+}
@@ -0,0 +1,125 @@
+package dev.arisu.demoecs.terrain.mesh;
+
+import dev.arisu.demoecs.terrain.BlockView;
+import dev.arisu.demoecs.terrain.Chunk;
+import java.util.Arrays;
+
+/**
+ * Blocks merged into cells of {@code scale} by {@code scale} blocks along x and y, one block high:
+ * a cell is solid if at least half of its blocks are, and every block of a solid cell reads as
+ * the most common block of the cell. Cells are aligned to multiples of the scale, so they never
+ * straddle chunks.
+ * <p>
+ * Cells are kept one block high so that the ground and everything on it stays at its height;
+ * merging along z too would lift a one block thick floor by up to {@code scale - 1} blocks.
+ * Sparse blocks, like scattered pillars, disappear rather than fill their cells.
+ * Not thread-safe, the last rows of cells read are cached.
+ */
+final class LodView implements BlockView {
+    /// NOTE: the mesher reads a column and its two neighbours along x in turns
+    private static final int CACHED_ROWS = 4;
+
+    /// NOTE: marks a solid cell whose block wasn't looked up yet
+    private static final int UNKNOWN = -1;
+
+    private final BlockView blocks;
+    private final int scale;
+    private final int cellMask;
+
+    private final CellRow[] cache = new CellRow[CACHED_ROWS];
+    private final int[] blockCounts = new int[256];
+
+    /**
+     * @param scale a power of two up to {@link Chunk#SIZE}
+     */
+    LodView(BlockView blocks, int scale) {
+        this.blocks = blocks;
+        this.scale = scale;
+        this.cellMask = (int) ((1L << scale) - 1);
+        for (int i = 0; i < CACHED_ROWS; ++i) {
+            cache[i] = new CellRow(Chunk.SIZE / scale);
+        }
+    }
+
+    @Override
+    public byte getBlock(int x, int y, int z) {
+        final int minX = x & -Chunk.SIZE;
+        final CellRow cellRow = cellRow(minX, y, z);
+        final int cell = (x & Chunk.MASK) / scale;
+        if (cellRow.block[cell] == UNKNOWN) {
+            cellRow.block[cell] = commonBlock(minX + cell * scale, cellRow.minY, z);
+        }
+        return (byte) cellRow.block[cell];
+    }
+
+    @Override
+    public boolean hasBlock(int x, int y, int z) {
+        return (cellRow(x & -Chunk.SIZE, y, z).row >>> (x & Chunk.MASK) & 1) != 0;
+    }
+
+    @Override
+    public int getRow(int x, int y, int z) {
+        return cellRow(x, y, z).row;
+    }
+
+    private CellRow cellRow(int x, int y, int z) {
+        final int minY = y & -scale;
+        final CellRow cellRow = cache[(x >> Chunk.SIZE_BITS) & (CACHED_ROWS - 1)];
+        if (cellRow.x == x && cellRow.minY == minY && cellRow.z == z) {
+            return cellRow;
+        }
+
+        cellRow.x = x;
+        cellRow.minY = minY;
+        cellRow.z = z;
+        cellRow.row = 0;
+        Arrays.fill(cellRow.block, 0);
+
+        for (int cy = minY; cy < minY + scale; ++cy) {
+            final int row = blocks.getRow(x, cy, z);
+            for (int cell = 0; cell < cellRow.block.length; ++cell) {
+                cellRow.block[cell] += Integer.bitCount(row >>> (cell * scale) & cellMask);
+            }
+        }
+        for (int cell = 0; cell < cellRow.block.length; ++cell) {
+            if (2 * cellRow.block[cell] >= scale * scale) {
+                cellRow.row |= cellMask << (cell * scale);
+                cellRow.block[cell] = UNKNOWN;
+            } else {
+                cellRow.block[cell] = 0;
+            }
+        }
+        return cellRow;
+    }
+
+    /**
+     * @return most common solid block of the cell starting at the given block, the first one
+     * found of those as common.
+     */
+    private int commonBlock(int minX, int minY, int z) {
+        int common = 0;
+        for (int cy = minY; cy < minY + scale; ++cy) {
+            for (int cx = minX; cx < minX + scale; ++cx) {
+                final int block = blocks.getBlock(cx, cy, z) & 0xFF;
+                if (block != 0 && ++blockCounts[block] > blockCounts[common]) {
+                    common = block;
+                }
+            }
+        }
+        Arrays.fill(blockCounts, 0);
+        return common;
+    }
+
+    /**
+     * Occupancy of a row of cells, and the block of every cell, 0 for an empty cell.
+     */
+    private static final class CellRow {
+        int x, minY, z = Integer.MIN_VALUE;
+        int row;
+        final int[] block;
+
+        CellRow(int cells) {
+            block = new int[cells];
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package dev.arisu.demoecs.terrain.mesh;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Pool of direct byte buffers for finished meshes. Capacities are rounded up to a power
+ * of two, one free list per size class, so buffers get reused across chunks of similar size.
+ * <p>
+ * Thread-safe: meshing threads acquire buffers, the render thread releases them after upload.
+ */
+public final class MeshBufferPool {
+    private static final int MIN_CLASS = 10;
+    private static final int CLASSES = 32 - MIN_CLASS;
+
+    private final Queue<ByteBuffer>[] free;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public MeshBufferPool() {
+        free = new Queue[CLASSES];
+        for (int i = 0; i < CLASSES; ++i) {
+            free[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * @return cleared buffer with capacity of at least {@code bytes}.
+     */
+    public ByteBuffer acquire(int bytes) {
+        final int sizeClass = sizeClass(bytes);
+        final ByteBuffer buffer = free[sizeClass].poll();
+        if (buffer != null) {
+            buffer.clear();
+            return buffer;
+        }
+        return allocate(1 << (sizeClass + MIN_CLASS));
+    }
+
+    public void release(ByteBuffer buffer) {
+        free[sizeClass(buffer.capacity())].offer(buffer);
+    }
+
+    static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    private static int sizeClass(int bytes) {
+        final int bits = 32 - Integer.numberOfLeadingZeros(Math.max(bytes, 1) - 1);
+        return Math.max(0, bits - MIN_CLASS);
+    }
+}
@@ -0,0 +1,12 @@
+package dev.arisu.demoecs.terrain.mesh;
+
+public enum MeshingMode {
+    /**
+     * One quad per exposed block face.
+     */
+    NAIVE,
+    /**
+     * Adjacent coplanar faces of the same color are merged into larger quads.
+     */
+    GREEDY
+}
@@ -0,0 +1,160 @@
+package dev.arisu.demoecs.terrain.mesh;
+
+import java.util.Arrays;
+
+/**
+ * Finds the columns that may be seen from the camera by walking sections of the terrain outwards
+ * from the camera's section, breadth first.
+ * <p>
+ * Every section has a visibility graph: bit {@code from * 6 + to} is set if air connects face
+ * {@code from} to face {@code to} (faces are ordered as in {@link ChunkMesher}). A section is only
+ * entered through a face of the section before it, and only left through faces connected to the
+ * face it was entered through. The walk also never turns back against a direction it already went,
+ * so a section behind solid walls isn't reached around them. Sections outside the filter, the view
+ * frustum, aren't entered either.
+ * <p>
+ * A layer of open air is assumed below and above the column, so a camera above the terrain still
+ * sees every column and a cave is only reached through the surface. Not thread-safe, doesn't touch
+ * OpenGL.
+ */
+public final class OcclusionCuller {
+    /// NOTE: every face connected to every face, visibility of an empty or unknown section
+    public static final long ALL = (1L << 36) - 1;
+
+    private static final int[] OPPOSITE = {1, 0, 3, 2, 5, 4};
+    private static final int[] DX = {0, 0, 1, -1, 0, 0};
+    private static final int[] DY = {0, 0, 0, 0, 1, -1};
+    private static final int[] DZ = {-1, 1, 0, 0, 0, 0};
+
+    /// NOTE: sections of a column plus the open air layers below and above it
+    private static final int LAYERS = ChunkMesher.SECTIONS + 2;
+
+    /// NOTE: entered through no face, the camera's own section
+    private static final int NO_FACE = 6;
+
+    @FunctionalInterface
+    public interface VisibilitySource {
+        /**
+         * @return visibility of the section, {@link #ALL} if it isn't known yet.
+         */
+        long getVisibility(int chunkX, int chunkY, int section);
+    }
+
+    @FunctionalInterface
+    public interface SectionFilter {
+        boolean test(float minX, float minY, float minZ, float maxX, float maxY, float maxZ);
+    }
+
+    @FunctionalInterface
+    public interface ColumnConsumer {
+        void accept(int chunkX, int chunkY);
+    }
+
+    /// NOTE: of columns within the radius around the camera's column
+    private final int radius;
+    private final int width;
+
+    /// NOTE: per section, the walk that reached it and the face and directions it was reached with
+    private final int[] visited;
+    private final byte[] entryFace;
+    private final byte[] directions;
+    private final int[] columnVisited;
+    private final int[] queue;
+    private int walk;
+
+    public OcclusionCuller(int radius) {
+        this.radius = radius;
+        this.width = 2 * radius + 1;
+        this.visited = new int[width * width * LAYERS];
+        this.entryFace = new byte[visited.length];
+        this.directions = new byte[visited.length];
+        this.columnVisited = new int[width * width];
+        this.queue = new int[visited.length];
+    }
+
+    public static boolean isConnected(long visibility, int from, int to) {
+        return (visibility >>> (from * 6 + to) & 1) != 0;
+    }
+
+    /**
+     * Passes every column, within the radius around the camera's column, that has a section
+     * reached by the walk. Each column is passed once.
+     *
+     * @param eyeX camera position, in blocks
+     */
+    public void cull(float eyeX, float eyeY, float eyeZ,
+                     VisibilitySource source, SectionFilter filter, ColumnConsumer consumer) {
+        if (++walk == 0) {
+            Arrays.fill(visited, 0);
+            Arrays.fill(columnVisited, 0);
+            walk = 1;
+        }
+
+        final int centerX = Math.floorDiv((int) Math.floor(eyeX), ChunkMesher.SIZE);
+        final int centerY = Math.floorDiv((int) Math.floor(eyeY), ChunkMesher.SIZE);
+        final int centerLayer = Math.max(-1, Math.min(ChunkMesher.SECTIONS,
+                Math.floorDiv((int) Math.floor(eyeZ), ChunkMesher.SIZE)));
+
+        final int start = index(radius, radius, centerLayer + 1);
+        visited[start] = walk;
+        entryFace[start] = NO_FACE;
+        directions[start] = 0;
+        queue[0] = start;
+
+        for (int head = 0, tail = 1; head < tail; ++head) {
+            final int current = queue[head];
+            final int layer = current % LAYERS;
+            final int x = current / LAYERS % width;
+            final int y = current / LAYERS / width;
+            final int chunkX = centerX - radius + x;
+            final int chunkY = centerY - radius + y;
+
+            final long visibility;
+            if (layer == 0 || layer == LAYERS - 1) {
+                visibility = ALL;
+            } else {
+                visibility = source.getVisibility(chunkX, chunkY, layer - 1);
+                if (columnVisited[y * width + x] != walk) {
+                    columnVisited[y * width + x] = walk;
+                    consumer.accept(chunkX, chunkY);
+                }
+            }
+
+            final int entry = entryFace[current];
+            for (int face = 0; face < 6; ++face) {
+                if ((directions[current] >>> OPPOSITE[face] & 1) != 0) {
+                    continue;
+                }
+                if (entry != NO_FACE && !isConnected(visibility, entry, face)) {
+                    continue;
+                }
+
+                final int nx = x + DX[face], ny = y + DY[face], nLayer = layer + DZ[face];
+                if (nx < 0 || nx >= width || ny < 0 || ny >= width || nLayer < 0 || nLayer >= LAYERS) {
+                    continue;
+                }
+                final int next = index(nx, ny, nLayer);
+                if (visited[next] == walk) {
+                    continue;
+                }
+
+                final float minX = (chunkX + DX[face]) * ChunkMesher.SIZE;
+                final float minY = (chunkY + DY[face]) * ChunkMesher.SIZE;
+                final float minZ = (nLayer - 1) * ChunkMesher.SIZE;
+                if (!filter.test(minX, minY, minZ,
+                        minX + ChunkMesher.SIZE, minY + ChunkMesher.SIZE, minZ + ChunkMesher.SIZE)) {
+                    continue;
+                }
+
+                visited[next] = walk;
+                entryFace[next] = (byte) OPPOSITE[face];
+                directions[next] = (byte) (directions[current] | 1 << face);
+                queue[tail++] = next;
+            }
+        }
+    }
+
+    private int index(int x, int y, int layer) {
+        return (y * width + x) * LAYERS + layer;
+    }
+}
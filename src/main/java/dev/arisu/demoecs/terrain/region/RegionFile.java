@@ -0,0 +1,198 @@
+package dev.arisu.demoecs.terrain.region;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * Payloads of up to {@link #CHUNKS} chunks in a single memory-mapped file.
+ * <p>
+ * The file starts with an offset table: for every chunk, the sector its payload starts at and
+ * its length in bytes, zero for chunks that aren't stored. Payloads take whole sectors of
+ * {@link #SECTOR_BYTES}. A rewritten payload stays in place if it still fits its sectors,
+ * otherwise it moves to the first free run of sectors that fits it.
+ * <p>
+ * The whole file is mapped and grows by remapping, so the OS pages chunks in on first read and
+ * writes them back on its own, in any order; {@link #flush()} forces them out. Chunks written
+ * since the last flush may be torn by a crash. Free sectors at the end of the file are trimmed
+ * when it is opened, before it is mapped. Thread-safe.
+ */
+public final class RegionFile implements Closeable {
+    public static final int SIZE_BITS = 3;
+    public static final int SIZE = 1 << SIZE_BITS;
+    public static final int MASK = SIZE - 1;
+    public static final int CHUNKS = SIZE * SIZE * SIZE;
+
+    public static final int SECTOR_BYTES = 256;
+
+    private static final int ENTRY_BYTES = 8;
+    private static final int HEADER_SECTORS = CHUNKS * ENTRY_BYTES / SECTOR_BYTES;
+
+    /// NOTE: mapping grows by at least this much, remapping is expensive
+    private static final int MIN_GROWTH_SECTORS = 256;
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    private final BitSet usedSectors = new BitSet();
+
+    public RegionFile(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        final long size = channel.size();
+        if (size % SECTOR_BYTES != 0 || (size != 0 && size < HEADER_SECTORS * SECTOR_BYTES)) {
+            channel.close();
+            throw new IOException(path + ": not a region file, " + size + " bytes");
+        }
+
+        usedSectors.set(0, HEADER_SECTORS);
+        if (size != 0) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SECTORS * SECTOR_BYTES);
+            /// NOTE: read without mapping, the file may be trimmed right after
+            while (header.hasRemaining()) {
+                channel.read(header, header.position());
+            }
+            for (int i = 0; i < CHUNKS; ++i) {
+                final int sector = header.getInt(i * ENTRY_BYTES);
+                final int length = header.getInt(i * ENTRY_BYTES + 4);
+                if (length == 0) {
+                    continue;
+                }
+                if (sector < HEADER_SECTORS || length < 0 || (long) sector + sectors(length) > size / SECTOR_BYTES) {
+                    channel.close();
+                    throw new IOException(path + ": chunk " + i + " out of file bounds");
+                }
+                usedSectors.set(sector, sector + sectors(length));
+            }
+        }
+
+        /// NOTE: only while nothing is mapped, truncating a mapped file fails on some systems
+        if ((long) usedSectors.length() * SECTOR_BYTES < size) {
+            channel.truncate((long) usedSectors.length() * SECTOR_BYTES);
+        }
+        map(usedSectors.length());
+    }
+
+    /**
+     * @param x chunk coordinate local to the region, in range [0, {@link #SIZE})
+     */
+    public static int index(int x, int y, int z) {
+        return (z << (2 * SIZE_BITS)) | (y << SIZE_BITS) | x;
+    }
+
+    public synchronized boolean contains(int index) {
+        return getLength(index) != 0;
+    }
+
+    /**
+     * @return payload of the chunk, {@code null} if it isn't stored.
+     */
+    public synchronized byte[] read(int index) {
+        final int length = getLength(index);
+        if (length == 0) {
+            return null;
+        }
+        final byte[] payload = new byte[length];
+        final ByteBuffer view = buffer.duplicate();
+        view.position(getSector(index) * SECTOR_BYTES);
+        view.get(payload);
+        return payload;
+    }
+
+    /**
+     * Stores the payload of the chunk, an empty one removes the chunk.
+     */
+    public synchronized void write(int index, byte[] payload) throws IOException {
+        final int oldLength = getLength(index);
+        final int oldSector = getSector(index);
+        final int oldSectors = sectors(oldLength);
+        final int needed = sectors(payload.length);
+
+        if (payload.length == 0) {
+            setEntry(index, 0, 0);
+            usedSectors.clear(oldSector, oldSector + oldSectors);
+            return;
+        }
+
+        /// NOTE: a moved payload is allocated while its old sectors are still taken
+        final boolean inPlace = oldLength != 0 && needed <= oldSectors;
+        final int sector = inPlace ? oldSector : allocate(needed);
+        if ((long) (sector + needed) * SECTOR_BYTES > buffer.capacity()) {
+            map(Math.max(sector + needed, buffer.capacity() / SECTOR_BYTES + MIN_GROWTH_SECTORS));
+        }
+
+        final ByteBuffer view = buffer.duplicate();
+        view.position(sector * SECTOR_BYTES);
+        view.put(payload);
+        usedSectors.set(sector, sector + needed);
+        setEntry(index, sector, payload.length);
+
+        if (inPlace) {
+            usedSectors.clear(sector + needed, oldSector + oldSectors);
+        } else {
+            usedSectors.clear(oldSector, oldSector + oldSectors);
+        }
+    }
+
+    /**
+     * @return number of sectors taken by the header and stored payloads.
+     */
+    public synchronized int getUsedSectors() {
+        return usedSectors.cardinality();
+    }
+
+    public synchronized void flush() {
+        buffer.force();
+    }
+
+    /**
+     * Flushes and closes the file. Free sectors at its end are left to be trimmed by the next open.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        buffer = null;
+        channel.close();
+    }
+
+    /**
+     * @return first sector of the first run of {@code needed} free sectors.
+     */
+    private int allocate(int needed) {
+        int sector = usedSectors.nextClearBit(HEADER_SECTORS);
+        while (true) {
+            final int next = usedSectors.nextSetBit(sector);
+            if (next == -1 || next >= sector + needed) {
+                return sector;
+            }
+            sector = usedSectors.nextClearBit(next);
+        }
+    }
+
+    private void map(long sectors) throws IOException {
+        /// NOTE: mapping past the end of a writable file extends it
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, sectors * SECTOR_BYTES);
+    }
+
+    private int getSector(int index) {
+        return buffer.getInt(index * ENTRY_BYTES);
+    }
+
+    private int getLength(int index) {
+        return buffer.getInt(index * ENTRY_BYTES + 4);
+    }
+
+    private void setEntry(int index, int sector, int length) {
+        buffer.putInt(index * ENTRY_BYTES, sector);
+        buffer.putInt(index * ENTRY_BYTES + 4, length);
+    }
+
+    private static int sectors(int length) {
+        return (length + SECTOR_BYTES - 1) / SECTOR_BYTES;
+    }
+}
@@ -0,0 +1,260 @@
+package dev.arisu.demoecs.terrain.region;
+
+import dev.arisu.demoecs.terrain.Chunk;
+import dev.arisu.demoecs.terrain.Terrain;
+import dev.arisu.demoecs.util.LongMap;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Chunks saved in a directory of {@link RegionFile}s, one file per {@link RegionFile#SIZE}<sup>3</sup>
+ * chunks, every chunk deflated on its own.
+ * <p>
+ * {@link #save} only encodes the chunk on the calling thread, compressing and writing it is left
+ * to a background writer. Chunks that weren't written yet are loaded from memory. Thread-safe.
+ */
+public final class RegionStorage implements Closeable {
+    private static final String PREFIX = "r.";
+    private static final String SUFFIX = ".region";
+
+    private static final byte[] DELETED = new byte[0];
+
+    private final Path directory;
+
+    private final LongMap<RegionFile> regions = new LongMap<>();
+
+    /// NOTE: encoded chunks waiting for the writer, `DELETED` for removed ones
+    private final LongMap<byte[]> pending = new LongMap<>();
+
+    private final ExecutorService writer;
+
+    private IOException failure;
+
+    public RegionStorage(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "region-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @FunctionalInterface
+    public interface ChunkConsumer {
+        void accept(int cx, int cy, int cz);
+    }
+
+    /**
+     * Opens every region file of the directory and passes coordinates of every chunk they store.
+     */
+    public void forEachChunk(ChunkConsumer consumer) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                final String name = file.getFileName().toString();
+                final String[] coordinates = name.substring(PREFIX.length(), name.length() - SUFFIX.length()).split("\\.");
+                if (coordinates.length != 3) {
+                    continue;
+                }
+                final int rx, ry, rz;
+                try {
+                    rx = Integer.parseInt(coordinates[0]);
+                    ry = Integer.parseInt(coordinates[1]);
+                    rz = Integer.parseInt(coordinates[2]);
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+
+                final RegionFile region = region(rx, ry, rz);
+                for (int z = 0; z < RegionFile.SIZE; ++z) {
+                    for (int y = 0; y < RegionFile.SIZE; ++y) {
+                        for (int x = 0; x < RegionFile.SIZE; ++x) {
+                            if (region.contains(RegionFile.index(x, y, z))) {
+                                consumer.accept((rx << RegionFile.SIZE_BITS) | x,
+                                        (ry << RegionFile.SIZE_BITS) | y, (rz << RegionFile.SIZE_BITS) | z);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return saved chunk, {@code null} if there is none.
+     * @throws UncheckedIOException if the chunk can't be read; callers read blocks, not files.
+     */
+    public Chunk load(int cx, int cy, int cz) {
+        try {
+            final byte[] encoded;
+            synchronized (this) {
+                encoded = pending.get(Terrain.chunkKey(cx, cy, cz));
+            }
+            if (encoded != null) {
+                return encoded == DELETED ? null : Chunk.read(new DataInputStream(new ByteArrayInputStream(encoded)));
+            }
+
+            final byte[] payload = region(cx >> RegionFile.SIZE_BITS, cy >> RegionFile.SIZE_BITS,
+                    cz >> RegionFile.SIZE_BITS).read(index(cx, cy, cz));
+            if (payload == null) {
+                return null;
+            }
+            try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(payload)))) {
+                return Chunk.read(in);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("chunk " + cx + " " + cy + " " + cz, e);
+        }
+    }
+
+    /**
+     * Saves the chunk as it is now, the chunk may be modified right after.
+     */
+    public void save(int cx, int cy, int cz, Chunk chunk) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            chunk.write(new DataOutputStream(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        enqueue(cx, cy, cz, bytes.toByteArray());
+    }
+
+    public void delete(int cx, int cy, int cz) {
+        enqueue(cx, cy, cz, DELETED);
+    }
+
+    /**
+     * Waits for every chunk saved so far to be written and forces region files to disk.
+     *
+     * @throws IOException if the writer failed to write any of them since the last call; chunks
+     *                     that failed stay in memory until saved again.
+     */
+    public void flush() throws IOException {
+        try {
+            writer.submit(() -> {
+                synchronized (this) {
+                    regions.forEach((key, region) -> region.flush());
+                }
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while flushing", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        synchronized (this) {
+            final IOException failed = failure;
+            failure = null;
+            if (failed != null) {
+                throw failed;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            writer.shutdown();
+            synchronized (this) {
+                IOException closeFailure = null;
+                for (RegionFile region : regionList()) {
+                    try {
+                        region.close();
+                    } catch (IOException e) {
+                        closeFailure = e;
+                    }
+                }
+                regions.clear();
+                if (closeFailure != null) {
+                    throw closeFailure;
+                }
+            }
+        }
+    }
+
+    private void enqueue(int cx, int cy, int cz, byte[] encoded) {
+        final long key = Terrain.chunkKey(cx, cy, cz);
+        synchronized (this) {
+            pending.put(key, encoded);
+        }
+        writer.execute(() -> write(cx, cy, cz, key));
+    }
+
+    /**
+     * Writes the latest pending version of the chunk, if an earlier task didn't write it already.
+     */
+    private void write(int cx, int cy, int cz, long key) {
+        final byte[] encoded;
+        synchronized (this) {
+            encoded = pending.get(key);
+        }
+        if (encoded == null) {
+            return;
+        }
+
+        try {
+            final byte[] payload;
+            if (encoded == DELETED) {
+                payload = DELETED;
+            } else {
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (DeflaterOutputStream out = new DeflaterOutputStream(bytes)) {
+                    out.write(encoded);
+                }
+                payload = bytes.toByteArray();
+            }
+            region(cx >> RegionFile.SIZE_BITS, cy >> RegionFile.SIZE_BITS, cz >> RegionFile.SIZE_BITS)
+                    .write(index(cx, cy, cz), payload);
+        } catch (IOException e) {
+            /// NOTE: stays pending, so it is still loaded from memory and written by its next save
+            synchronized (this) {
+                failure = e;
+            }
+            return;
+        }
+
+        synchronized (this) {
+            /// NOTE: saved again meanwhile, the task queued by that save writes it
+            if (pending.get(key) == encoded) {
+                pending.remove(key);
+            }
+        }
+    }
+
+    private synchronized RegionFile region(int rx, int ry, int rz) throws IOException {
+        final long key = Terrain.chunkKey(rx, ry, rz);
+        RegionFile region = regions.get(key);
+        if (region == null) {
+            region = new RegionFile(directory.resolve(PREFIX + rx + "." + ry + "." + rz + SUFFIX));
+            regions.put(key, region);
+        }
+        return region;
+    }
+
+    private List<RegionFile> regionList() {
+        final List<RegionFile> list = new ArrayList<>();
+        regions.forEach((key, region) -> list.add(region));
+        return list;
+    }
+
+    private static int index(int cx, int cy, int cz) {
+        return RegionFile.index(cx & RegionFile.MASK, cy & RegionFile.MASK, cz & RegionFile.MASK);
+    }
+}
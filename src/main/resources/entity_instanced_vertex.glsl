@@ -0,0 +1,23 @@
+#version 120
+
+uniform mat4 viewMatrix;
+uniform mat4 projMatrix;
+
+attribute vec3 in_Position;
+attribute vec3 in_Color;
+
+// per-instance model matrix, one column per attribute
+attribute vec4 in_Model0;
+attribute vec4 in_Model1;
+attribute vec4 in_Model2;
+attribute vec4 in_Model3;
+
+varying vec3 ex_Color;
+
+void main()
+{
+    mat4 modelMatrix = mat4(in_Model0, in_Model1, in_Model2, in_Model3);
+
+    gl_Position = projMatrix * viewMatrix * modelMatrix * vec4(in_Position, 1.0);
+    ex_Color = in_Color;
+}
@@ -0,0 +1,22 @@
+#version 120
+
+uniform mat4 viewMatrix;
+uniform mat4 projMatrix;
+
+// world position of the chunk column's minimum corner
+uniform vec3 chunkOrigin;
+uniform vec3 palette[32];
+
+// x, y, z: column-local position
+// w: face index in bits 0-2, palette color index in bits 3-7
+attribute vec4 in_Packed;
+
+varying vec3 ex_Color;
+
+void main()
+{
+    float colorIndex = floor(in_Packed.w / 8.0);
+
+    gl_Position = projMatrix * viewMatrix * vec4(chunkOrigin + in_Packed.xyz, 1.0);
+    ex_Color = palette[int(colorIndex)];
+}
@@ -0,0 +1,136 @@
+package dev.arisu.demoecs;
+
+import com.badlogic.ashley.core.ComponentMapper;
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.ashley.systems.IteratingSystem;
+import com.badlogic.ashley.utils.ImmutableArray;
+import dev.arisu.demoecs.components.BoundingBox;
+import dev.arisu.demoecs.components.Flags;
+import dev.arisu.demoecs.components.Position;
+import dev.arisu.demoecs.components.Rotation;
+import dev.arisu.demoecs.components.Velocity;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of going through the entities of a {@link Family} in Ashley, reading {@link Position}
+ * and {@link Velocity} of each: through component mappers, through
+ * {@link Entity#getComponent(Class)}, in an {@link IteratingSystem}, and by testing every entity
+ * of the engine against the family. Only some entities match, the rest have other components,
+ * as they would in a game.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FamilyBenchmark {
+    private static final Family FAMILY = Family.all(Position.class, Velocity.class).get();
+
+    private static final ComponentMapper<Position> pm = ComponentMapper.getFor(Position.class);
+    private static final ComponentMapper<Velocity> vm = ComponentMapper.getFor(Velocity.class);
+
+    @Param({"1000", "10000", "100000"})
+    public int entities;
+
+    /// NOTE: fraction of entities in the family
+    @Param({"0.1", "1.0"})
+    public double matching;
+
+    private Engine engine;
+    private ImmutableArray<Entity> family;
+    private ImmutableArray<Entity> all;
+    private SumSystem system;
+
+    @Setup
+    public void setup() {
+        engine = new Engine();
+        system = new SumSystem();
+        engine.addSystem(system);
+
+        final Random rand = new Random(42);
+        for (int i = 0; i < entities; ++i) {
+            final Entity entity = new Entity();
+            entity.add(new Position(rand.nextFloat(), rand.nextFloat(), rand.nextFloat()));
+            entity.add(new Rotation());
+            if (rand.nextDouble() < matching) {
+                final Velocity velocity = new Velocity();
+                velocity.z = rand.nextFloat();
+                entity.add(velocity);
+                entity.add(new BoundingBox(0.6f, 0.6f, 1.75f));
+            } else {
+                entity.add(new Flags());
+            }
+            engine.addEntity(entity);
+        }
+
+        family = engine.getEntitiesFor(FAMILY);
+        all = engine.getEntities();
+    }
+
+    @Benchmark
+    public float mappers() {
+        float sum = 0.0f;
+        for (int i = 0, n = family.size(); i < n; ++i) {
+            final Entity entity = family.get(i);
+            sum += pm.get(entity).z * vm.get(entity).z;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public float getComponent() {
+        float sum = 0.0f;
+        for (int i = 0, n = family.size(); i < n; ++i) {
+            final Entity entity = family.get(i);
+            sum += entity.getComponent(Position.class).z * entity.getComponent(Velocity.class).z;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public float iteratingSystem() {
+        system.sum = 0.0f;
+        engine.update(0.1f);
+        return system.sum;
+    }
+
+    @Benchmark
+    public float matchEveryEntity() {
+        float sum = 0.0f;
+        for (int i = 0, n = all.size(); i < n; ++i) {
+            final Entity entity = all.get(i);
+            if (FAMILY.matches(entity)) {
+                sum += pm.get(entity).z * vm.get(entity).z;
+            }
+        }
+        return sum;
+    }
+
+    private static final class SumSystem extends IteratingSystem {
+        float sum;
+
+        SumSystem() {
+            super(FAMILY);
+        }
+
+        @Override
+        protected void processEntity(Entity entity, float deltaTime) {
+            sum += pm.get(entity).z * vm.get(entity).z;
+        }
+    }
+}
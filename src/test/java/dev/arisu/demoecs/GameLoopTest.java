@@ -0,0 +1,81 @@
+package dev.arisu.demoecs;
+
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.EntitySystem;
+import dev.arisu.demoecs.resources.TimeResource;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GameLoopTest {
+
+    private static class CountingSystem extends EntitySystem {
+        int updates;
+        float lastDelta;
+
+        @Override
+        public void update(float deltaTime) {
+            updates++;
+            lastDelta = deltaTime;
+        }
+    }
+
+    /// NOTE: engine holds a single system per class
+    private static final class LogicSystem extends CountingSystem {
+    }
+
+    private static final class RenderSystem extends CountingSystem {
+    }
+
+    @Test
+    public void ticksAtFixedRateRegardlessOfFrameTime() {
+        final TimeResource time = new TimeResource();
+        final GameLoop loop = new GameLoop(new Engine(), time, 10, 0.1f, 5);
+        final CountingSystem logic = new LogicSystem();
+        final CountingSystem render = new RenderSystem();
+        loop.addLogicSystem(logic);
+        loop.addRenderSystem(render);
+
+        Assert.assertEquals(0, loop.frame(0.05));
+        Assert.assertEquals(1, loop.frame(0.1));
+        Assert.assertEquals(2, loop.frame(0.2));
+
+        Assert.assertEquals(3, logic.updates);
+        Assert.assertEquals(0.1f, logic.lastDelta, 0.0f);
+        Assert.assertEquals(3, render.updates);
+        Assert.assertEquals(3L, time.getTicks());
+        Assert.assertEquals(0.5f, time.getAlpha(), 1e-4f);
+    }
+
+    @Test
+    public void dropsTicksBeyondCatchUpCap() {
+        final TimeResource time = new TimeResource();
+        final GameLoop loop = new GameLoop(new Engine(), time, 10, 0.1f, 3);
+        final CountingSystem logic = new LogicSystem();
+        loop.addLogicSystem(logic);
+
+        Assert.assertEquals(3, loop.frame(1.05));
+        Assert.assertEquals(7L, loop.getDroppedTicks());
+        Assert.assertEquals(0.5f, time.getAlpha(), 1e-4f);
+
+        Assert.assertEquals(1, loop.frame(0.05));
+        Assert.assertEquals(4, logic.updates);
+    }
+
+    @Test
+    public void profilesOnlyWhileEnabled() {
+        final GameLoop loop = new GameLoop(new Engine(), new TimeResource(), 10, 0.1f, 5);
+        final Profiler profiler = new Profiler();
+        loop.addLogicSystem(new LogicSystem());
+        loop.setProfiler(profiler);
+
+        loop.frame(0.1);
+        Assert.assertEquals(0, profiler.time(Profiler.TICK).getCount());
+
+        profiler.setEnabled(true);
+        loop.frame(0.2);
+        Assert.assertEquals(2, profiler.time(Profiler.TICK).getCount());
+        Assert.assertEquals(1, profiler.time(Profiler.FRAME).getCount());
+        Assert.assertEquals(200_000_000, profiler.time(Profiler.FRAME).getMax());
+        Assert.assertEquals(2, profiler.time(Profiler.SYSTEM_PREFIX + "LogicSystem").getCount());
+    }
+}
@@ -0,0 +1,187 @@
+package dev.arisu.demoecs;
+
+import com.badlogic.ashley.core.EntitySystem;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SystemSchedulerTest {
+
+    private static final class A {
+    }
+
+    private static final class B {
+    }
+
+    private static class RecordingSystem extends EntitySystem {
+        private final List<String> log;
+        private final String name;
+        Thread thread;
+
+        RecordingSystem(List<String> log, String name) {
+            this.log = log;
+            this.name = name;
+        }
+
+        @Override
+        public void update(float deltaTime) {
+            thread = Thread.currentThread();
+            log.add(name);
+        }
+    }
+
+    @Access(writes = A.class)
+    private static final class WritesA extends RecordingSystem {
+        WritesA(List<String> log, String name) {
+            super(log, name);
+        }
+    }
+
+    @Access(reads = A.class)
+    private static class ReadsA extends RecordingSystem {
+        ReadsA(List<String> log, String name) {
+            super(log, name);
+        }
+    }
+
+    @Access(reads = A.class, mainThread = true)
+    private static final class ReadsAOnMainThread extends RecordingSystem {
+        ReadsAOnMainThread(List<String> log, String name) {
+            super(log, name);
+        }
+    }
+
+    /**
+     * Waits for the other one, so both must run at the same time for either to finish,
+     * then both take a while longer.
+     */
+    @Access(writes = B.class)
+    private static final class Rendezvous extends EntitySystem {
+        private final CountDownLatch latch;
+        boolean met;
+
+        Rendezvous(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public void update(float deltaTime) {
+            latch.countDown();
+            try {
+                met = latch.await(5, TimeUnit.SECONDS);
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Access(reads = A.class)
+    private static final class OtherRendezvous extends EntitySystem {
+        private final Rendezvous rendezvous;
+
+        OtherRendezvous(Rendezvous rendezvous) {
+            this.rendezvous = rendezvous;
+        }
+
+        @Override
+        public void update(float deltaTime) {
+            rendezvous.update(deltaTime);
+        }
+    }
+
+    @Test
+    public void conflictingSystemsRunInOrderOfAddition() {
+        final List<String> log = Collections.synchronizedList(new ArrayList<>());
+        final SystemScheduler scheduler = new SystemScheduler(4);
+        scheduler.add(new ReadsA(log, "read 1"));
+        scheduler.add(new WritesA(log, "write"));
+        scheduler.add(new ReadsA(log, "read 2"));
+
+        for (int i = 0; i < 100; ++i) {
+            log.clear();
+            scheduler.update(0.1f);
+            Assert.assertEquals(3, log.size());
+            Assert.assertEquals("read 1", log.get(0));
+            Assert.assertEquals("write", log.get(1));
+            Assert.assertEquals("read 2", log.get(2));
+        }
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void startsOnlyAsManyThreadsAsSystemsCanOverlap() {
+        final List<String> log = Collections.synchronizedList(new ArrayList<>());
+        final SystemScheduler scheduler = new SystemScheduler(4);
+        scheduler.add(new ReadsA(log, "read 1"));
+        scheduler.add(new WritesA(log, "write"));
+        Assert.assertEquals(1, scheduler.getThreads());
+
+        scheduler.add(new ReadsA(log, "read 2"));
+        scheduler.add(new ReadsA(log, "read 3"));
+        Assert.assertEquals(2, scheduler.getThreads());
+
+        scheduler.update(0.1f);
+        Assert.assertEquals(4, log.size());
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void independentSystemsRunConcurrently() {
+        final CountDownLatch latch = new CountDownLatch(2);
+        final Rendezvous rendezvous = new Rendezvous(latch);
+        final SystemScheduler scheduler = new SystemScheduler(2);
+        scheduler.add(rendezvous);
+        scheduler.add(new OtherRendezvous(rendezvous));
+
+        scheduler.update(0.1f);
+
+        Assert.assertTrue(rendezvous.met);
+        Assert.assertTrue(scheduler.getParallelism() > 1.5);
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void mainThreadSystemsRunOnCaller() {
+        final List<String> log = Collections.synchronizedList(new ArrayList<>());
+        final SystemScheduler scheduler = new SystemScheduler(4);
+        final RecordingSystem main = new ReadsAOnMainThread(log, "main");
+        final RecordingSystem undeclared = new RecordingSystem(log, "undeclared");
+        scheduler.add(new ReadsA(log, "worker"));
+        scheduler.add(main);
+        scheduler.add(undeclared);
+
+        scheduler.update(0.1f);
+
+        Assert.assertSame(Thread.currentThread(), main.thread);
+        Assert.assertSame(Thread.currentThread(), undeclared.thread);
+        Assert.assertEquals("undeclared", log.get(2));
+        for (SystemScheduler.Timing timing : scheduler.getTimings()) {
+            Assert.assertEquals(1, timing.getRuns());
+        }
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void rethrowsFailureOfSystem() {
+        final SystemScheduler scheduler = new SystemScheduler(2);
+        scheduler.add(new ReadsA(new ArrayList<>(), "fails") {
+            @Override
+            public void update(float deltaTime) {
+                throw new IllegalArgumentException("boom");
+            }
+        });
+
+        try {
+            scheduler.update(0.1f);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("boom", e.getMessage());
+        }
+        scheduler.shutdown();
+    }
+}
@@ -0,0 +1,111 @@
+package dev.arisu.demoecs.resources;
+
+import com.badlogic.ashley.core.ComponentMapper;
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.ashley.utils.ImmutableArray;
+import dev.arisu.demoecs.components.Position;
+import dev.arisu.demoecs.components.Velocity;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Integrating velocity into position over the same bodies kept as {@link Position} and
+ * {@link Velocity} components, reached through component mappers, and kept in the columns
+ * of {@link BodiesResource}. Entities are created interleaved with unrelated allocations,
+ * as they would be in a running game, so that components don't end up contiguous by luck.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class BodiesBenchmark {
+    private static final float DT = 0.1f;
+
+    private static final ComponentMapper<Position> pm = ComponentMapper.getFor(Position.class);
+    private static final ComponentMapper<Velocity> vm = ComponentMapper.getFor(Velocity.class);
+
+    @Param({"10000", "100000", "1000000"})
+    public int count;
+
+    private ImmutableArray<Entity> entities;
+    private BodiesResource bodies;
+
+    /// NOTE: keeps the interleaved garbage reachable
+    private Object[] padding;
+
+    @Setup
+    public void setup() {
+        final Engine engine = new Engine();
+        bodies = new BodiesResource(count);
+        padding = new Object[count];
+
+        final Random rand = new Random(42);
+        for (int i = 0; i < count; ++i) {
+            final float x = rand.nextFloat() * 200.0f - 100.0f;
+            final float y = rand.nextFloat() * 200.0f - 100.0f;
+            final float z = rand.nextFloat() * 10.0f;
+
+            final Entity entity = new Entity();
+            final Position position = new Position(x, y, z);
+            padding[i] = new float[rand.nextInt(16)];
+            final Velocity velocity = new Velocity();
+            velocity.x = rand.nextFloat() - 0.5f;
+            velocity.y = rand.nextFloat() - 0.5f;
+            velocity.z = rand.nextFloat() - 0.5f;
+            entity.add(position);
+            entity.add(velocity);
+            engine.addEntity(entity);
+
+            final int slot = bodies.add(new Entity(), x, y, z, 0.6f, 0.6f, 1.75f);
+            bodies.vx[slot] = velocity.x;
+            bodies.vy[slot] = velocity.y;
+            bodies.vz[slot] = velocity.z;
+        }
+
+        entities = engine.getEntitiesFor(Family.all(Position.class, Velocity.class).get());
+    }
+
+    @Benchmark
+    public float components() {
+        float sum = 0.0f;
+        for (int i = 0, n = entities.size(); i < n; ++i) {
+            final Entity entity = entities.get(i);
+            final Position position = pm.get(entity);
+            final Velocity velocity = vm.get(entity);
+            position.x += velocity.x * DT;
+            position.y += velocity.y * DT;
+            position.z += velocity.z * DT;
+            sum += position.z;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public float columns() {
+        final float[] x = bodies.x, y = bodies.y, z = bodies.z;
+        final float[] vx = bodies.vx, vy = bodies.vy, vz = bodies.vz;
+        float sum = 0.0f;
+        for (int i = 0, n = bodies.getSize(); i < n; ++i) {
+            x[i] += vx[i] * DT;
+            y[i] += vy[i] * DT;
+            z[i] += vz[i] * DT;
+            sum += z[i];
+        }
+        return sum;
+    }
+}
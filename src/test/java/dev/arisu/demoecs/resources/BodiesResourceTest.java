@@ -0,0 +1,50 @@
+package dev.arisu.demoecs.resources;
+
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import dev.arisu.demoecs.components.BodySlot;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BodiesResourceTest {
+
+    @Test
+    public void growsPastInitialCapacity() {
+        final BodiesResource bodies = new BodiesResource(2);
+        for (int i = 0; i < 5; ++i) {
+            Assert.assertEquals(i, bodies.add(new Entity(), i, 0.0f, 0.0f, 1.0f, 1.0f, 1.0f));
+        }
+
+        Assert.assertEquals(5, bodies.getSize());
+        for (int i = 0; i < 5; ++i) {
+            Assert.assertEquals(i, bodies.x[i], 0.0f);
+            Assert.assertEquals(i, bodies.prevX[i], 0.0f);
+            Assert.assertEquals(1.0f, bodies.scaleZ[i], 0.0f);
+        }
+    }
+
+    @Test
+    public void removingBodyMovesLastIntoItsSlot() {
+        final Engine engine = new Engine();
+        final BodiesResource bodies = new BodiesResource();
+        engine.addEntityListener(BodiesResource.FAMILY, bodies);
+
+        final Entity[] entities = new Entity[3];
+        for (int i = 0; i < 3; ++i) {
+            entities[i] = new Entity();
+            bodies.add(entities[i], i, 0.0f, 0.0f, 1.0f, 1.0f, 1.0f);
+            bodies.vz[i] = -i;
+            engine.addEntity(entities[i]);
+        }
+
+        engine.removeEntity(entities[0]);
+
+        Assert.assertEquals(2, bodies.getSize());
+        Assert.assertEquals(-1, entities[0].getComponent(BodySlot.class).index);
+        Assert.assertEquals(0, entities[2].getComponent(BodySlot.class).index);
+        Assert.assertSame(entities[2], bodies.getEntity(0));
+        Assert.assertEquals(2.0f, bodies.x[0], 0.0f);
+        Assert.assertEquals(-2.0f, bodies.vz[0], 0.0f);
+        Assert.assertEquals(1, entities[1].getComponent(BodySlot.class).index);
+    }
+}
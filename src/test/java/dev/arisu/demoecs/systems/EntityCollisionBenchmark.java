@@ -0,0 +1,92 @@
+package dev.arisu.demoecs.systems;
+
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import dev.arisu.demoecs.components.BoundingBox;
+import dev.arisu.demoecs.components.Position;
+import dev.arisu.demoecs.components.Velocity;
+import dev.arisu.demoecs.resources.ContactsResource;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time of one tick of {@link EntityCollisionSystem}. Entities are scattered over an area
+ * growing with their number, so that density, and the number of contacts per entity, stays
+ * the same: cost should grow linearly. Positions are reset before every tick.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EntityCollisionBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int entities;
+
+    /// NOTE: square blocks of ground per entity
+    private static final float AREA_PER_ENTITY = 4.0f;
+
+    private Engine engine;
+    private ContactsResource contacts;
+
+    private float[] initial;
+    private Position[] positions;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        contacts = new ContactsResource();
+        engine = new Engine();
+        engine.addSystem(new EntityCollisionSystem(contacts));
+
+        final float side = (float) Math.sqrt(entities * AREA_PER_ENTITY);
+        final Random rand = new Random(42);
+
+        initial = new float[entities * 3];
+        positions = new Position[entities];
+        for (int i = 0; i < entities; ++i) {
+            initial[i * 3] = rand.nextFloat() * side;
+            initial[i * 3 + 1] = rand.nextFloat() * side;
+            initial[i * 3 + 2] = rand.nextFloat() * 4.0f;
+
+            final Entity entity = new Entity();
+            positions[i] = new Position();
+            entity.add(positions[i]);
+            entity.add(new Velocity());
+            entity.add(new BoundingBox(0.6f, 0.6f, 1.75f));
+            engine.addEntity(entity);
+        }
+
+        reset();
+        engine.update(0.1f);
+        System.out.printf("%n%d entities: %d contacts%n", entities, contacts.getCount());
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() {
+        for (int i = 0; i < entities; ++i) {
+            positions[i].x = initial[i * 3];
+            positions[i].y = initial[i * 3 + 1];
+            positions[i].z = initial[i * 3 + 2];
+        }
+    }
+
+    @Benchmark
+    public int tick() {
+        engine.update(0.1f);
+        return contacts.getCount();
+    }
+}
@@ -0,0 +1,69 @@
+package dev.arisu.demoecs.systems;
+
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import dev.arisu.demoecs.components.BoundingBox;
+import dev.arisu.demoecs.components.Position;
+import dev.arisu.demoecs.components.Velocity;
+import dev.arisu.demoecs.resources.ContactsResource;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EntityCollisionSystemTest {
+
+    @Test
+    public void testOverlappingEntitiesArePushedApart() {
+        final ContactsResource contacts = new ContactsResource();
+        final Engine engine = new Engine();
+        engine.addSystem(new EntityCollisionSystem(contacts));
+
+        final Entity a = entity(engine, 0.0f, 0.0f, 0.0f, true);
+        final Entity b = entity(engine, 0.4f, 0.0f, 0.0f, true);
+        a.getComponent(Velocity.class).x = 1.0f;
+        b.getComponent(Velocity.class).x = -1.0f;
+
+        engine.update(0.1f);
+
+        Assert.assertEquals(1, contacts.getCount());
+        Assert.assertEquals(0.2f, contacts.getDepth(0), 1e-5f);
+
+        final Position pa = a.getComponent(Position.class);
+        final Position pb = b.getComponent(Position.class);
+        Assert.assertEquals(0.6005f, pb.x - pa.x, 1e-5f);
+        Assert.assertEquals(0.0f, a.getComponent(Velocity.class).x, 0.0f);
+        Assert.assertEquals(0.0f, b.getComponent(Velocity.class).x, 0.0f);
+
+        engine.update(0.1f);
+        Assert.assertEquals(0, contacts.getCount());
+    }
+
+    @Test
+    public void testEntityWithoutVelocityStaysInPlace() {
+        final ContactsResource contacts = new ContactsResource();
+        final Engine engine = new Engine();
+        engine.addSystem(new EntityCollisionSystem(contacts));
+
+        final Entity wall = entity(engine, 0.0f, 0.0f, 0.0f, false);
+        final Entity body = entity(engine, 0.0f, 0.0f, 1.5f, true);
+
+        engine.update(0.1f);
+
+        Assert.assertEquals(1, contacts.getCount());
+        Assert.assertEquals(0.0f, wall.getComponent(Position.class).z, 0.0f);
+        Assert.assertEquals(1.7505f, body.getComponent(Position.class).z, 1e-5f);
+
+        final float normalZ = contacts.getEntityA(0) == body ? contacts.getNormalZ(0) : -contacts.getNormalZ(0);
+        Assert.assertEquals(1.0f, normalZ, 0.0f);
+    }
+
+    private static Entity entity(Engine engine, float x, float y, float z, boolean dynamic) {
+        final Entity entity = new Entity();
+        entity.add(new Position(x, y, z));
+        entity.add(new BoundingBox(0.6f, 0.6f, 1.75f));
+        if (dynamic) {
+            entity.add(new Velocity());
+        }
+        engine.addEntity(entity);
+        return entity;
+    }
+}
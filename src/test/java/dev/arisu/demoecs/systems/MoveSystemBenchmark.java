@@ -0,0 +1,113 @@
+package dev.arisu.demoecs.systems;
+
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import dev.arisu.demoecs.components.BoundingBox;
+import dev.arisu.demoecs.components.Flags;
+import dev.arisu.demoecs.components.Position;
+import dev.arisu.demoecs.components.Velocity;
+import dev.arisu.demoecs.terrain.Chunk;
+import dev.arisu.demoecs.terrain.PillarGenerator;
+import dev.arisu.demoecs.terrain.Terrain;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time of one tick of {@link GravitySystem} and {@link MoveSystem} over many bodies scattered
+ * over the generated terrain, by number of bodies, their speed and number of threads moving them.
+ * Bodies are put back to their initial state before every tick, so that every tick measures
+ * the same sweeps.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MoveSystemBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    public int bodies;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    /// NOTE: blocks per tick, bodies move diagonally downwards
+    @Param({"0.1", "2"})
+    public float speed;
+
+    private Terrain terrain;
+    private Engine engine;
+
+    private float[] initial;
+    private Entity[] entities;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        terrain = new Terrain(42L);
+        terrain.generate(-PillarGenerator.RADIUS / Chunk.SIZE, -PillarGenerator.RADIUS / Chunk.SIZE, 0,
+                PillarGenerator.RADIUS / Chunk.SIZE - 1, PillarGenerator.RADIUS / Chunk.SIZE - 1, 0);
+
+        engine = new Engine();
+        engine.addSystem(new GravitySystem());
+        engine.addSystem(new MoveSystem(terrain, threads));
+
+        final Random rand = new Random(42);
+        initial = new float[bodies * 6];
+        entities = new Entity[bodies];
+        for (int i = 0; i < bodies; ++i) {
+            initial[i * 6] = rand.nextFloat() * 200.0f - 100.0f;
+            initial[i * 6 + 1] = rand.nextFloat() * 200.0f - 100.0f;
+            initial[i * 6 + 2] = 1.0f + rand.nextFloat() * 8.0f;
+            initial[i * 6 + 3] = (rand.nextFloat() * 2.0f - 1.0f) * speed * 10.0f;
+            initial[i * 6 + 4] = (rand.nextFloat() * 2.0f - 1.0f) * speed * 10.0f;
+            initial[i * 6 + 5] = -speed * 10.0f;
+
+            final Entity entity = new Entity();
+            entity.add(new Position());
+            entity.add(new Velocity());
+            entity.add(new BoundingBox(0.6f, 0.6f, 1.75f));
+            entity.add(new Flags());
+            engine.addEntity(entity);
+            entities[i] = entity;
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() {
+        for (int i = 0; i < bodies; ++i) {
+            final Position position = entities[i].getComponent(Position.class);
+            final Velocity velocity = entities[i].getComponent(Velocity.class);
+            position.x = initial[i * 6];
+            position.y = initial[i * 6 + 1];
+            position.z = initial[i * 6 + 2];
+            velocity.x = initial[i * 6 + 3];
+            velocity.y = initial[i * 6 + 4];
+            velocity.z = initial[i * 6 + 5];
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.removeAllEntities();
+        engine.removeSystem(engine.getSystem(MoveSystem.class));
+    }
+
+    @Benchmark
+    public void tick() {
+        engine.update(0.1f);
+    }
+}
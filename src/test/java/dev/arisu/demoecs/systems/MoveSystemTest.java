@@ -0,0 +1,106 @@
+package dev.arisu.demoecs.systems;
+
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import dev.arisu.demoecs.components.BoundingBox;
+import dev.arisu.demoecs.components.Flags;
+import dev.arisu.demoecs.components.Position;
+import dev.arisu.demoecs.components.Velocity;
+import dev.arisu.demoecs.terrain.Terrain;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MoveSystemTest {
+
+    @Test
+    public void testEntityLandsOnGround() {
+        final Terrain terrain = new Terrain();
+        final Engine engine = engine(terrain, 1);
+        final Entity entity = body(engine, 64.5f, 64.5f, 5.0f, 0.0f, 0.0f);
+
+        for (int i = 0; i < 200; ++i) {
+            engine.update(0.1f);
+        }
+
+        final Position position = entity.getComponent(Position.class);
+        Assert.assertTrue(entity.getComponent(Flags.class).isOnGround());
+        Assert.assertTrue(position.z >= 1.0f);
+        Assert.assertTrue(position.z < 5.0f);
+    }
+
+    @Test
+    public void testFastBodyDoesNotTunnel() {
+        final Terrain terrain = new Terrain();
+        final Engine engine = engine(terrain, 1);
+        final Entity entity = body(engine, 64.5f, 64.5f, 100.0f, 0.0f, 0.0f);
+        entity.getComponent(Velocity.class).z = -2000.0f;
+
+        engine.update(0.1f);
+
+        final Position position = entity.getComponent(Position.class);
+        Assert.assertTrue(entity.getComponent(Flags.class).isOnGround());
+        Assert.assertTrue(position.z >= 1.0f);
+        Assert.assertTrue(position.z < 5.0f);
+    }
+
+    @Test
+    public void testFloor() {
+        final float[] values = {0.0f, 0.5f, 1.0f, -0.0f, -0.5f, -1.0f, -1.5f, 127.999f, -127.001f};
+        for (float value : values) {
+            Assert.assertEquals((int) Math.floor(value), MoveSystem.floor(value));
+        }
+    }
+
+    @Test
+    public void testParallelMatchesSequential() {
+        final Terrain terrain = new Terrain();
+        final Engine sequential = engine(terrain, 1);
+        final Engine parallel = engine(terrain, 4);
+
+        final int count = 2000;
+        final Entity[] a = new Entity[count];
+        final Entity[] b = new Entity[count];
+
+        final Random rand = new Random(42);
+        for (int i = 0; i < count; ++i) {
+            final float x = rand.nextFloat() * 200.0f - 100.0f;
+            final float y = rand.nextFloat() * 200.0f - 100.0f;
+            final float z = 1.0f + rand.nextFloat() * 8.0f;
+            final float vx = rand.nextFloat() * 2.0f - 1.0f;
+            final float vy = rand.nextFloat() * 2.0f - 1.0f;
+            a[i] = body(sequential, x, y, z, vx, vy);
+            b[i] = body(parallel, x, y, z, vx, vy);
+        }
+
+        for (int tick = 0; tick < 50; ++tick) {
+            sequential.update(0.1f);
+            parallel.update(0.1f);
+        }
+
+        for (int i = 0; i < count; ++i) {
+            final Position pa = a[i].getComponent(Position.class);
+            final Position pb = b[i].getComponent(Position.class);
+            Assert.assertEquals(pa.x, pb.x, 0.0f);
+            Assert.assertEquals(pa.y, pb.y, 0.0f);
+            Assert.assertEquals(pa.z, pb.z, 0.0f);
+        }
+    }
+
+    private static Engine engine(Terrain terrain, int threads) {
+        final Engine engine = new Engine();
+        engine.addSystem(new GravitySystem());
+        engine.addSystem(new MoveSystem(terrain, threads));
+        return engine;
+    }
+
+    private static Entity body(Engine engine, float x, float y, float z, float vx, float vy) {
+        final Entity entity = new Entity();
+        entity.add(new Position(x, y, z));
+        entity.add(new Velocity(vx, vy, 0.0f));
+        entity.add(new BoundingBox(0.6f, 0.6f, 1.75f));
+        entity.add(new Flags());
+        engine.addEntity(entity);
+        return entity;
+    }
+}
@@ -0,0 +1,57 @@
+package dev.arisu.demoecs.systems;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SpatialHashTest {
+
+    @Test
+    public void testMatchesBruteForce() {
+        final SpatialHash hash = new SpatialHash(2.0f);
+        final Random rand = new Random(42);
+
+        // refill a few times to exercise clearing, and the table growing
+        for (int round = 0; round < 3; ++round) {
+            hash.clear();
+
+            final int count = 500 * (round + 1);
+            final float[][] boxes = new float[count][];
+            for (int i = 0; i < count; ++i) {
+                final float x = rand.nextFloat() * 60.0f - 30.0f;
+                final float y = rand.nextFloat() * 60.0f - 30.0f;
+                final float z = rand.nextFloat() * 10.0f - 5.0f;
+                // mostly small boxes, some larger than a cell
+                final float size = rand.nextInt(10) == 0 ? 5.0f : 0.6f;
+                boxes[i] = new float[]{x, y, z, x + size, y + size, z + size * 2};
+                Assert.assertEquals(i, hash.add(x, y, z, x + size, y + size, z + size * 2));
+            }
+
+            final Set<Long> expected = new HashSet<>();
+            for (int a = 0; a < count; ++a) {
+                for (int b = a + 1; b < count; ++b) {
+                    if (overlap(boxes[a], boxes[b])) {
+                        expected.add((long) a * count + b);
+                    }
+                }
+            }
+
+            final Set<Long> actual = new HashSet<>();
+            hash.forEachOverlap((a, b) -> {
+                Assert.assertTrue(a < b);
+                Assert.assertTrue("reported twice: " + a + ", " + b, actual.add((long) a * count + b));
+            });
+
+            Assert.assertFalse(expected.isEmpty());
+            Assert.assertEquals(expected, actual);
+        }
+    }
+
+    private static boolean overlap(float[] a, float[] b) {
+        return a[3] > b[0] && a[0] < b[3]
+                && a[4] > b[1] && a[1] < b[4]
+                && a[5] > b[2] && a[2] < b[5];
+    }
+}
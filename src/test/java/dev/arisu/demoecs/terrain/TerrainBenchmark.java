@@ -0,0 +1,194 @@
+package dev.arisu.demoecs.terrain;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link Terrain#getBlock} cost of the paletted chunk storage against the original flat
+ * {@code byte[256][256][128]} layout: at random points, in small boxes around them and
+ * scanning a region in order. {@code chunked*} benchmarks read generated chunks, {@code lazy*}
+ * ones a terrain that didn't generate anything and reads from its generator.
+ * <p>
+ * Also the time to generate the whole ground, in parallel.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TerrainBenchmark {
+    private static final int LOOKUPS = 4096;
+
+    /// NOTE: region scanned by the sequential benchmarks, crossing chunk borders on every axis
+    private static final int SCAN_MIN_X = -40, SCAN_MIN_Y = -40, SCAN_MIN_Z = 0;
+    private static final int SCAN_SIZE_X = 80, SCAN_SIZE_Y = 80, SCAN_SIZE_Z = 40;
+    private static final int SCAN_BLOCKS = SCAN_SIZE_X * SCAN_SIZE_Y * SCAN_SIZE_Z;
+
+    /// NOTE: chunk box covering the ground of PillarGenerator
+    private static final int GROUND_MIN_C = -PillarGenerator.RADIUS / Chunk.SIZE;
+    private static final int GROUND_MAX_C = PillarGenerator.RADIUS / Chunk.SIZE - 1;
+
+    private Terrain terrain;
+    private Terrain lazyTerrain;
+    private FlatTerrain flatTerrain;
+
+    private int[] xs, ys, zs;
+
+    @Setup
+    public void setup() {
+        terrain = new Terrain(42L);
+        terrain.generate(GROUND_MIN_C, GROUND_MIN_C, 0, GROUND_MAX_C, GROUND_MAX_C, 0);
+        lazyTerrain = new Terrain(42L);
+        flatTerrain = new FlatTerrain(terrain);
+
+        final Random rand = new Random(42);
+        xs = new int[LOOKUPS];
+        ys = new int[LOOKUPS];
+        zs = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; ++i) {
+            xs[i] = rand.nextInt(256) - 128;
+            ys[i] = rand.nextInt(256) - 128;
+            zs[i] = rand.nextInt(8);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int chunkedRandomGetBlock() {
+        int sum = 0;
+        for (int i = 0; i < LOOKUPS; ++i) {
+            sum += terrain.getBlock(xs[i], ys[i], zs[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int lazyRandomGetBlock() {
+        int sum = 0;
+        for (int i = 0; i < LOOKUPS; ++i) {
+            sum += lazyTerrain.getBlock(xs[i], ys[i], zs[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int flatRandomGetBlock() {
+        int sum = 0;
+        for (int i = 0; i < LOOKUPS; ++i) {
+            sum += flatTerrain.getBlock(xs[i], ys[i], zs[i]);
+        }
+        return sum;
+    }
+
+    /**
+     * Scans a 3x3x3 box around each point, like {@code MoveSystem.sweepBroadPhase} does.
+     */
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS * 27)
+    public int chunkedBoxGetBlock() {
+        int sum = 0;
+        for (int i = 0; i < LOOKUPS; ++i) {
+            for (int z = zs[i] - 1; z <= zs[i] + 1; ++z) {
+                for (int y = ys[i] - 1; y <= ys[i] + 1; ++y) {
+                    for (int x = xs[i] - 1; x <= xs[i] + 1; ++x) {
+                        sum += terrain.getBlock(x, y, z);
+                    }
+                }
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS * 27)
+    public int flatBoxGetBlock() {
+        int sum = 0;
+        for (int i = 0; i < LOOKUPS; ++i) {
+            for (int z = zs[i] - 1; z <= zs[i] + 1; ++z) {
+                for (int y = ys[i] - 1; y <= ys[i] + 1; ++y) {
+                    for (int x = xs[i] - 1; x <= xs[i] + 1; ++x) {
+                        sum += flatTerrain.getBlock(x, y, z);
+                    }
+                }
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Scans the region x-fastest, like meshing a snapshot does.
+     */
+    @Benchmark
+    @OperationsPerInvocation(SCAN_BLOCKS)
+    public int chunkedSequentialGetBlock() {
+        int sum = 0;
+        for (int z = SCAN_MIN_Z; z < SCAN_MIN_Z + SCAN_SIZE_Z; ++z) {
+            for (int y = SCAN_MIN_Y; y < SCAN_MIN_Y + SCAN_SIZE_Y; ++y) {
+                for (int x = SCAN_MIN_X; x < SCAN_MIN_X + SCAN_SIZE_X; ++x) {
+                    sum += terrain.getBlock(x, y, z);
+                }
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SCAN_BLOCKS)
+    public int flatSequentialGetBlock() {
+        int sum = 0;
+        for (int z = SCAN_MIN_Z; z < SCAN_MIN_Z + SCAN_SIZE_Z; ++z) {
+            for (int y = SCAN_MIN_Y; y < SCAN_MIN_Y + SCAN_SIZE_Y; ++y) {
+                for (int x = SCAN_MIN_X; x < SCAN_MIN_X + SCAN_SIZE_X; ++x) {
+                    sum += flatTerrain.getBlock(x, y, z);
+                }
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int generateGround() {
+        final Terrain fresh = new Terrain(new PillarGenerator(42L));
+        fresh.generate(GROUND_MIN_C, GROUND_MIN_C, 0, GROUND_MAX_C, GROUND_MAX_C, 0);
+        return fresh.getChunkCount();
+    }
+
+    /**
+     * Copy of the original {@link Terrain} storage, kept as a baseline.
+     */
+    static final class FlatTerrain {
+        private final byte[][][] blocks = new byte[256][256][128];
+
+        FlatTerrain(Terrain source) {
+            for (int x = -128; x < 128; ++x) {
+                for (int y = -128; y < 128; ++y) {
+                    for (int z = 0; z < 128; ++z) {
+                        blocks[x + 128][y + 128][z] = source.getBlock(x, y, z);
+                    }
+                }
+            }
+        }
+
+        byte getBlock(int x, int y, int z) {
+            if (x < -128 || x >= 128 || y < -128 || y >= 128 || z < 0 || z >= 128) {
+                return 0;
+            }
+            return blocks[x + 128][y + 128][z];
+        }
+    }
+}
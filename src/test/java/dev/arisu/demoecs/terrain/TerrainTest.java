@@ -0,0 +1,265 @@
+package dev.arisu.demoecs.terrain;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TerrainTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSetAndResetFarAway() {
+        final Terrain terrain = new Terrain();
+        final int chunkCount = terrain.getChunkCount();
+
+        Assert.assertFalse(terrain.hasBlock(100000, -100000, 5000));
+
+        terrain.setBlock(100000, -100000, 5000);
+        Assert.assertTrue(terrain.hasBlock(100000, -100000, 5000));
+        Assert.assertFalse(terrain.hasBlock(100001, -100000, 5000));
+        Assert.assertEquals(chunkCount + 1, terrain.getChunkCount());
+
+        terrain.resetBlock(100000, -100000, 5000);
+        Assert.assertFalse(terrain.hasBlock(100000, -100000, 5000));
+        Assert.assertEquals(chunkCount, terrain.getChunkCount());
+    }
+
+    @Test
+    public void testNegativeCoordinates() {
+        final Terrain terrain = new Terrain();
+
+        terrain.setBlock(-1, -1, -1);
+        Assert.assertTrue(terrain.hasBlock(-1, -1, -1));
+        Assert.assertFalse(terrain.hasBlock(-1, -1, -2));
+        Assert.assertFalse(terrain.hasBlock(15, 15, 15 - Chunk.SIZE));
+    }
+
+    @Test
+    public void testFullChunkBecomesUniform() {
+        final Terrain terrain = new Terrain();
+        final int base = 1000 * Chunk.SIZE;
+
+        for (int z = 0; z < Chunk.SIZE; ++z) {
+            for (int y = 0; y < Chunk.SIZE; ++y) {
+                for (int x = 0; x < Chunk.SIZE; ++x) {
+                    terrain.setBlock(base + x, base + y, base + z);
+                }
+            }
+        }
+        Assert.assertTrue(terrain.hasBlock(base + 7, base + 3, base + 11));
+
+        terrain.resetBlock(base + 7, base + 3, base + 11);
+        Assert.assertFalse(terrain.hasBlock(base + 7, base + 3, base + 11));
+        Assert.assertTrue(terrain.hasBlock(base + 8, base + 3, base + 11));
+    }
+
+    @Test
+    public void testChunkCompact() {
+        final Chunk chunk = Chunk.uniform((byte) 1).toMutable();
+        Assert.assertSame(Chunk.uniform((byte) 1), chunk.compact());
+
+        chunk.setBlock(0, 0, 0, (byte) 0);
+        Assert.assertSame(chunk, chunk.compact());
+    }
+
+    @Test
+    public void testPaletteGrows() {
+        final Chunk chunk = Chunk.uniform((byte) 0).toMutable();
+        Assert.assertEquals(1, chunk.getBitsPerBlock());
+
+        chunk.setBlock(1, 2, 3, (byte) 1);
+        Assert.assertEquals(1, chunk.getBitsPerBlock());
+
+        for (int block = 2; block < 20; ++block) {
+            chunk.setBlock(block % Chunk.SIZE, 0, block / Chunk.SIZE, (byte) block);
+        }
+        Assert.assertEquals(8, chunk.getBitsPerBlock());
+
+        Assert.assertEquals(1, chunk.getBlock(1, 2, 3));
+        Assert.assertEquals(0, chunk.getBlock(0, 0, 0));
+        for (int block = 2; block < 20; ++block) {
+            Assert.assertEquals(block, chunk.getBlock(block % Chunk.SIZE, 0, block / Chunk.SIZE));
+        }
+    }
+
+    @Test
+    public void testSameSeedSameTerrain() {
+        final Terrain a = new Terrain(7L);
+        final Terrain b = new Terrain(7L);
+        final Terrain other = new Terrain(8L);
+
+        boolean differs = false;
+        for (int x = -PillarGenerator.RADIUS - 2; x < PillarGenerator.RADIUS + 2; ++x) {
+            for (int y = -PillarGenerator.RADIUS - 2; y < PillarGenerator.RADIUS + 2; ++y) {
+                for (int z = -1; z < 4; ++z) {
+                    Assert.assertEquals(a.getBlock(x, y, z), b.getBlock(x, y, z));
+                    differs |= a.getBlock(x, y, z) != other.getBlock(x, y, z);
+                }
+            }
+        }
+        Assert.assertTrue(differs);
+        Assert.assertTrue(a.hasBlock(-PillarGenerator.RADIUS, PillarGenerator.RADIUS - 1, 0));
+        Assert.assertFalse(a.hasBlock(PillarGenerator.RADIUS, 0, 0));
+    }
+
+    @Test
+    public void testGeneratingKeepsBlocksAndEdits() {
+        final PillarGenerator generator = new PillarGenerator(42L);
+        final Terrain terrain = new Terrain(generator);
+        Assert.assertEquals(0, terrain.getChunkCount());
+
+        terrain.resetBlock(5, 5, 0);
+        Assert.assertFalse(terrain.hasBlock(5, 5, 0));
+        Assert.assertEquals(1, terrain.getChunkCount());
+
+        terrain.generate(-2, -2, 0, 1, 1, 1);
+        Assert.assertEquals(16, terrain.getChunkCount());
+        Assert.assertFalse(terrain.hasBlock(5, 5, 0));
+
+        for (int x = -40; x < 40; ++x) {
+            for (int y = -40; y < 40; ++y) {
+                for (int z = 0; z < 4; ++z) {
+                    if (x != 5 || y != 5 || z != 0) {
+                        Assert.assertEquals(generator.getBlock(x, y, z), terrain.getBlock(x, y, z));
+                    }
+                }
+            }
+        }
+
+        terrain.setBlock(5, 5, 0);
+        final TerrainSnapshot snapshot = terrain.snapshot(-40, -40, 0, 40, 40, 3);
+        Assert.assertTrue(snapshot.hasBlock(5, 5, 0));
+        Assert.assertTrue(snapshot.hasBlock(39, -39, 0));
+    }
+
+    @Test
+    public void testRemovingGeneratedBlockKeepsChunk() {
+        final Terrain terrain = new Terrain((x, y, z) -> (byte) (x == 0 && y == 0 && z == 0 ? 1 : 0));
+
+        terrain.resetBlock(0, 0, 0);
+        Assert.assertFalse(terrain.hasBlock(0, 0, 0));
+        Assert.assertEquals(0, terrain.getChunkCount());
+
+        terrain.setBlock(1, 0, 0);
+        terrain.resetBlock(1, 0, 0);
+        Assert.assertFalse(terrain.hasBlock(0, 0, 0));
+    }
+
+    @Test
+    public void testEditsSurviveUnloadingAndReopening() throws Exception {
+        final Path directory = folder.getRoot().toPath();
+
+        final Terrain terrain = Terrain.open(directory, 7L);
+        final Terrain reference = new Terrain(7L);
+        terrain.generate(-2, -2, 0, 1, 1, 0);
+        terrain.resetBlock(5, 5, 0);
+        terrain.setBlock(-20, 10, 20);
+        terrain.unloadOutside(100, 100, 100, 100, 100, 100);
+        Assert.assertEquals(0, terrain.getChunkCount());
+        Assert.assertFalse(terrain.hasBlock(5, 5, 0));
+        Assert.assertTrue(terrain.hasBlock(-20, 10, 20));
+        terrain.setBlock(5, 5, 0);
+        terrain.resetBlock(2, 2, 1);
+        terrain.close();
+
+        final Terrain reopened = Terrain.open(directory, 8L);
+        for (int x = -32; x < 32; ++x) {
+            for (int y = -32; y < 32; ++y) {
+                for (int z = 0; z < 4; ++z) {
+                    if (x != 2 || y != 2 || z != 1) {
+                        Assert.assertEquals(reference.getBlock(x, y, z), reopened.getBlock(x, y, z));
+                    }
+                }
+            }
+        }
+        Assert.assertFalse(reopened.hasBlock(2, 2, 1));
+        Assert.assertTrue(reopened.hasBlock(-20, 10, 20));
+        reopened.close();
+    }
+
+    @Test
+    public void testUnloadedChunkReadsSeeLaterEdits() throws Exception {
+        final Terrain terrain = Terrain.open(folder.getRoot().toPath(), 7L);
+        terrain.setBlock(40, 40, 5);
+        terrain.unloadOutside(100, 100, 100, 100, 100, 100);
+
+        // decoded from storage, then edited, unloaded and read again
+        Assert.assertTrue(terrain.hasBlock(40, 40, 5));
+        Assert.assertEquals(1 << 8, terrain.getRow(32, 40, 5) & (1 << 8));
+        terrain.resetBlock(40, 40, 5);
+        terrain.setBlock(41, 40, 5);
+        terrain.unloadOutside(100, 100, 100, 100, 100, 100);
+        Assert.assertFalse(terrain.hasBlock(40, 40, 5));
+        Assert.assertTrue(terrain.hasBlock(41, 40, 5));
+        Assert.assertEquals(1 << 9, terrain.getRow(32, 40, 5));
+        Assert.assertEquals(1, terrain.snapshot(40, 40, 5, 41, 40, 5).getBlock(41, 40, 5));
+        terrain.close();
+    }
+
+    @Test
+    public void testEditsNotifyBorderingChunks() {
+        final Terrain terrain = new Terrain(TerrainGenerator.AIR);
+        final List<String> changed = new ArrayList<>();
+        terrain.addListener((cx, cy, cz) -> changed.add(cx + "," + cy + "," + cz));
+
+        terrain.setBlock(5, 5, 5);
+        Assert.assertEquals(Collections.singletonList("0,0,0"), changed);
+
+        changed.clear();
+        terrain.setBlock(5, 5, 5);
+        Assert.assertTrue(changed.isEmpty());
+
+        terrain.setBlock(16, -1, 5);
+        Assert.assertEquals(Arrays.asList("1,-1,0", "0,-1,0", "1,0,0"), changed);
+
+        changed.clear();
+        terrain.resetBlock(5, 5, 5);
+        Assert.assertEquals(Collections.singletonList("0,0,0"), changed);
+    }
+
+    @Test
+    public void testRowsMatchBlocks() {
+        final Random rand = new Random(1);
+        for (int blocks : new int[]{2, 3, 10}) {
+            final Chunk chunk = Chunk.uniform((byte) 1).toMutable();
+            for (int i = 0; i < 2000; ++i) {
+                chunk.setBlock(rand.nextInt(16), rand.nextInt(16), rand.nextInt(16), (byte) rand.nextInt(blocks));
+            }
+            for (int z = 0; z < Chunk.SIZE; ++z) {
+                for (int y = 0; y < Chunk.SIZE; ++y) {
+                    int expected = 0;
+                    for (int x = 0; x < Chunk.SIZE; ++x) {
+                        expected |= chunk.getBlock(x, y, z) != 0 ? 1 << x : 0;
+                    }
+                    Assert.assertEquals(expected, chunk.getRow(y, z));
+                }
+            }
+        }
+
+        final Terrain terrain = new Terrain(42L);
+        for (int i = 0; i < 2000; ++i) {
+            terrain.setBlock(rand.nextInt(48) - 16, rand.nextInt(48) - 16, rand.nextInt(16));
+        }
+        for (int z = -1; z < 17; ++z) {
+            for (int y = -16; y < 32; ++y) {
+                for (int x = -32; x < 48; x += Chunk.SIZE) {
+                    int expected = 0;
+                    for (int i = 0; i < Chunk.SIZE; ++i) {
+                        expected |= terrain.hasBlock(x + i, y, z) ? 1 << i : 0;
+                    }
+                    Assert.assertEquals(expected, terrain.getRow(x, y, z));
+                    Assert.assertEquals(expected, terrain.snapshot(x, y, z, x, y, z).getRow(x, y, z));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package dev.arisu.demoecs.terrain.mesh;
+
+import dev.arisu.demoecs.terrain.BlockView;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CPU cost of meshing one chunk column. Run with {@code -prof gc} to check that
+ * meshing doesn't allocate per voxel: {@code gc.alloc.rate.norm} should stay near zero.
+ * <p>
+ * Quad and vertex counts of the meshed column are printed once per trial, so that
+ * {@link MeshingMode}s can be compared on output size as well as on time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChunkMesherBenchmark {
+
+    /// NOTE: probability of a block above the ground layer being solid
+    @Param({"0.05", "0.5"})
+    public double density;
+
+    @Param({"NAIVE", "GREEDY"})
+    public MeshingMode mode;
+
+    private MeshBufferPool pool;
+    private ChunkMesher mesher;
+    private BlockView blocks;
+
+    @Setup
+    public void setup() {
+        pool = new MeshBufferPool();
+        mesher = new ChunkMesher(mode, pool);
+        blocks = new RandomBlocks(42L, density);
+
+        final ChunkMesh mesh = mesher.mesh(blocks, 0, 0);
+        System.out.printf("%n%s, density %s: %d quads, %d vertices%n",
+                mode, density, mesh.getQuads(), mesh.getVertexCount());
+        pool.release(mesh.getVertices());
+    }
+
+    @Benchmark
+    public int mesh() {
+        final ChunkMesh mesh = mesher.mesh(blocks, 0, 0);
+        pool.release(mesh.getVertices());
+        return mesh.getQuads();
+    }
+
+    /**
+     * Solid ground layer at z == 0 with random blocks above it, covering the meshed column
+     * and its one-block border.
+     */
+    static final class RandomBlocks implements BlockView {
+        private static final int MIN = -1;
+        private static final int SIZE = ChunkMesher.SIZE + 2;
+        private static final int HEIGHT = ChunkMesher.HEIGHT + 2;
+
+        private final boolean[] solid = new boolean[SIZE * SIZE * HEIGHT];
+
+        RandomBlocks(long seed, double density) {
+            final Random rand = new Random(seed);
+            for (int z = 0; z < HEIGHT; ++z) {
+                for (int y = 0; y < SIZE; ++y) {
+                    for (int x = 0; x < SIZE; ++x) {
+                        final int worldZ = z + MIN;
+                        solid[(z * SIZE + y) * SIZE + x] =
+                                worldZ == 0 || (worldZ > 0 && rand.nextDouble() < density);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public byte getBlock(int x, int y, int z) {
+            x -= MIN;
+            y -= MIN;
+            z -= MIN;
+            if (x < 0 || x >= SIZE || y < 0 || y >= SIZE || z < 0 || z >= HEIGHT) {
+                return 0;
+            }
+            return (byte) (solid[(z * SIZE + y) * SIZE + x] ? 1 : 0);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package dev.arisu.demoecs.terrain.mesh;
+
+import dev.arisu.demoecs.terrain.BlockView;
+import dev.arisu.demoecs.terrain.Terrain;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ChunkMesherTest {
+
+    @Test
+    public void testSingleBlock() {
+        final BlockView blocks = (x, y, z) -> (byte) (x == 3 && y == 4 && z == 5 ? 1 : 0);
+
+        final ChunkMesh mesh = new ChunkMesher().mesh(blocks, 0, 0);
+
+        Assert.assertEquals(6, mesh.getQuads());
+        Assert.assertEquals(6 * ChunkMesher.BYTES_PER_QUAD, mesh.getVertices().remaining());
+    }
+
+    @Test
+    public void testPackedVerticesAreColumnLocal() {
+        final BlockView blocks = (x, y, z) -> (byte) (x == 19 && y == -12 && z == 5 ? 1 : 0);
+
+        final ByteBuffer vertices = new ChunkMesher().mesh(blocks, 1, -1).getVertices();
+
+        Assert.assertEquals(24 * ChunkMesher.BYTES_PER_VERTEX, vertices.remaining());
+        for (int i = 0; i < 24; ++i) {
+            final int x = vertices.get() & 0xFF;
+            final int y = vertices.get() & 0xFF;
+            final int z = vertices.get() & 0xFF;
+            final int w = vertices.get() & 0xFF;
+
+            Assert.assertTrue(x == 3 || x == 4);
+            Assert.assertTrue(y == 4 || y == 5);
+            Assert.assertTrue(z == 5 || z == 6);
+            Assert.assertEquals(i / 4, w & 7);
+        }
+    }
+
+    @Test
+    public void testHiddenFacesAreSkipped() {
+        // two blocks side by side: the two touching faces are not visible
+        final BlockView blocks = (x, y, z) -> (byte) ((x == 3 || x == 4) && y == 4 && z == 5 ? 1 : 0);
+
+        Assert.assertEquals(10, new ChunkMesher().mesh(blocks, 0, 0).getQuads());
+    }
+
+    @Test
+    public void testNeighbourChunkHidesBorderFace() {
+        // x == 15 is in chunk 0, x == 16 is in chunk 1
+        final BlockView blocks = (x, y, z) -> (byte) ((x == 15 || x == 16) && y == 0 && z == 0 ? 1 : 0);
+
+        Assert.assertEquals(5, new ChunkMesher().mesh(blocks, 0, 0).getQuads());
+        Assert.assertEquals(5, new ChunkMesher().mesh(blocks, 1, 0).getQuads());
+    }
+
+    @Test
+    public void testGreedyMergesFlatLayer() {
+        final BlockView blocks = (x, y, z) -> (byte) (z == 0 ? 1 : 0);
+
+        final ChunkMesh naive = new ChunkMesher(MeshingMode.NAIVE, new MeshBufferPool()).mesh(blocks, 0, 0);
+        final ChunkMesh greedy = new ChunkMesher(MeshingMode.GREEDY, new MeshBufferPool()).mesh(blocks, 0, 0);
+
+        // neighbouring columns hide the side faces, leaving the top and the bottom
+        Assert.assertEquals(2 * 256, naive.getQuads());
+        Assert.assertEquals(2, greedy.getQuads());
+        Assert.assertEquals(8, greedy.getVertexCount());
+        Assert.assertEquals(8 * ChunkMesher.BYTES_PER_VERTEX, greedy.getVertices().remaining());
+    }
+
+    @Test
+    public void testGreedyKeepsSeparateRuns() {
+        // two 2x1 bars in the same plane with a gap between them
+        final BlockView blocks = (x, y, z) -> (byte) (z == 0 && y == 0 && (x == 0 || x == 1 || x == 3 || x == 4) ? 1 : 0);
+
+        final ChunkMesh greedy = new ChunkMesher(MeshingMode.GREEDY, new MeshBufferPool()).mesh(blocks, 0, 0);
+
+        Assert.assertEquals(12, greedy.getQuads());
+    }
+
+    @Test
+    public void testPipeline() throws InterruptedException {
+        final Terrain terrain = new Terrain();
+
+        try (ChunkMeshPipeline pipeline = new ChunkMeshPipeline(terrain, MeshingMode.NAIVE, 2)) {
+            for (int x = -2; x < 2; ++x) {
+                for (int y = -2; y < 2; ++y) {
+                    pipeline.submit(x, y);
+                }
+            }
+
+            final Set<String> meshed = new HashSet<>();
+            final long deadline = System.currentTimeMillis() + 10000;
+            while (meshed.size() < 16 && System.currentTimeMillis() < deadline) {
+                final ChunkMesh mesh = pipeline.poll();
+                if (mesh == null) {
+                    Thread.sleep(1);
+                    continue;
+                }
+                final ChunkMesh expected = new ChunkMesher().mesh(terrain, mesh.getChunkX(), mesh.getChunkY());
+                Assert.assertEquals(expected.getQuads(), mesh.getQuads());
+                Assert.assertEquals(expected.getVertices(), mesh.getVertices());
+
+                meshed.add(mesh.getChunkX() + "," + mesh.getChunkY());
+            }
+
+            Assert.assertEquals(16, meshed.size());
+        }
+    }
+
+    @Test
+    public void testResubmittedColumnIsTellable() throws InterruptedException {
+        final Terrain terrain = new Terrain(42L);
+
+        try (ChunkMeshPipeline pipeline = new ChunkMeshPipeline(terrain, MeshingMode.NAIVE, 2)) {
+            final long first = pipeline.submit(0, 0);
+            terrain.setBlock(8, 8, 10);
+            final long second = pipeline.submit(0, 0);
+            Assert.assertTrue(second > first);
+
+            final ChunkMesh expected = new ChunkMesher().mesh(terrain, 0, 0);
+            int polled = 0;
+            final long deadline = System.currentTimeMillis() + 10000;
+            while (polled < 2 && System.currentTimeMillis() < deadline) {
+                final ChunkMesh mesh = pipeline.poll();
+                if (mesh == null) {
+                    Thread.sleep(1);
+                    continue;
+                }
+                polled++;
+                if (mesh.getSequence() == second) {
+                    Assert.assertEquals(expected.getVertices(), mesh.getVertices());
+                } else {
+                    Assert.assertEquals(first, mesh.getSequence());
+                    Assert.assertEquals(expected.getQuads() - 6, mesh.getQuads());
+                }
+            }
+            Assert.assertEquals(2, polled);
+        }
+    }
+
+    @Test
+    public void testFailedMeshIsReported() throws InterruptedException {
+        final Terrain terrain = new Terrain((x, y, z) -> {
+            if (x >= 160) {
+                throw new IllegalStateException("generator failed at " + x);
+            }
+            return (byte) 0;
+        });
+
+        try (ChunkMeshPipeline pipeline = new ChunkMeshPipeline(terrain, MeshingMode.NAIVE, 1)) {
+            final long sequence = pipeline.submit(10, 0);
+
+            ChunkMesh mesh = null;
+            final long deadline = System.currentTimeMillis() + 10000;
+            while (mesh == null && System.currentTimeMillis() < deadline) {
+                mesh = pipeline.poll();
+                Thread.sleep(1);
+            }
+            Assert.assertNotNull(mesh);
+            Assert.assertTrue(mesh.isFailed());
+            Assert.assertEquals(sequence, mesh.getSequence());
+            Assert.assertEquals(10, mesh.getChunkX());
+            pipeline.recycle(mesh);
+        }
+    }
+
+    @Test
+    public void testSectionVisibility() {
+        // a wall across the lowest section at x == 8, ground filling the third one
+        final BlockView blocks = (x, y, z) -> (byte) ((x == 8 && z < 16) || (z >= 32 && z < 48) ? 1 : 0);
+
+        final long[] visibility = new ChunkMesher().mesh(blocks, 0, 0).getVisibility();
+
+        Assert.assertEquals(ChunkMesher.SECTIONS, visibility.length);
+        Assert.assertFalse(OcclusionCuller.isConnected(visibility[0], 3, 2));
+        Assert.assertTrue(OcclusionCuller.isConnected(visibility[0], 3, 4));
+        Assert.assertTrue(OcclusionCuller.isConnected(visibility[0], 2, 1));
+        Assert.assertTrue(OcclusionCuller.isConnected(visibility[0], 0, 1));
+        Assert.assertEquals(OcclusionCuller.ALL, visibility[1]);
+        Assert.assertEquals(0, visibility[2]);
+        Assert.assertEquals(OcclusionCuller.ALL, visibility[3]);
+    }
+
+    @Test
+    public void testLodMergesBlocksIntoCells() {
+        // half of a 4x4 cell, and half of the next cell in the neighbouring chunk
+        final BlockView blocks = (x, y, z) -> (byte) (z == 5 && (y == 4 || y == 5) && x >= 12 && x < 20 ? 1 : 0);
+
+        final ChunkMesh mesh = new ChunkMesher(MeshingMode.GREEDY, new MeshBufferPool()).mesh(new LodView(blocks, 4), 0, 0);
+
+        // the neighbouring cell hides the east face
+        Assert.assertEquals(5, mesh.getQuads());
+        final ByteBuffer vertices = mesh.getVertices();
+        for (int i = 0; i < mesh.getVertexCount(); ++i) {
+            final int x = vertices.get() & 0xFF;
+            final int y = vertices.get() & 0xFF;
+            final int z = vertices.get() & 0xFF;
+            vertices.get();
+
+            Assert.assertTrue(x == 12 || x == 16);
+            Assert.assertTrue(y == 4 || y == 8);
+            Assert.assertTrue(z == 5 || z == 6);
+        }
+    }
+
+    @Test
+    public void testLodDropsSparseBlocks() {
+        // a single pillar on the ground doesn't turn its 8x8 cell into a slab
+        final BlockView ground = (x, y, z) -> (byte) (z == 0 ? 1 : 0);
+        final BlockView pillar = (x, y, z) -> (byte) (z == 0 || (x == 3 && y == 3 && z <= 2) ? 1 : 0);
+
+        final ChunkMesher mesher = new ChunkMesher(MeshingMode.GREEDY, new MeshBufferPool());
+        final ByteBuffer expected = mesher.mesh(new LodView(ground, 8), 0, 0).getVertices();
+        final ChunkMesh mesh = mesher.mesh(new LodView(pillar, 8), 0, 0);
+
+        Assert.assertEquals(2, mesh.getQuads());
+        Assert.assertEquals(expected, mesh.getVertices());
+        Assert.assertFalse(new LodView(pillar, 8).hasBlock(3, 3, 1));
+    }
+
+    @Test
+    public void testLodCellTakesMostCommonBlock() {
+        // 2x2 cell of three blocks of 2 and one of 1
+        final BlockView blocks = (x, y, z) -> (byte) (x < 2 && y < 2 && z == 0 ? (x == 0 && y == 0 ? 1 : 2) : 0);
+
+        final LodView view = new LodView(blocks, 2);
+
+        Assert.assertEquals(2, view.getBlock(0, 0, 0));
+        Assert.assertEquals(2, view.getBlock(1, 1, 0));
+        Assert.assertEquals(0b11, view.getRow(0, 1, 0));
+        Assert.assertEquals(0, view.getBlock(2, 0, 0));
+    }
+}
@@ -0,0 +1,45 @@
+package dev.arisu.demoecs.terrain.mesh;
+
+import dev.arisu.demoecs.terrain.Terrain;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OcclusionCullerTest {
+
+    @Test
+    public void testSolidWallHidesColumnsBehindIt() {
+        // a wall of solid columns along x == 1, open air everywhere else
+        final OcclusionCuller culler = new OcclusionCuller(3);
+        final Set<Long> visible = new HashSet<>();
+
+        culler.cull(8.0f, 8.0f, 24.0f,
+                (chunkX, chunkY, section) -> chunkX == 1 ? 0 : OcclusionCuller.ALL,
+                (minX, minY, minZ, maxX, maxY, maxZ) -> true,
+                (chunkX, chunkY) -> Assert.assertTrue(visible.add(Terrain.chunkKey(chunkX, chunkY, 0))));
+
+        Assert.assertTrue(visible.contains(Terrain.chunkKey(-3, 3, 0)));
+        Assert.assertTrue(visible.contains(Terrain.chunkKey(1, 0, 0)));
+        Assert.assertTrue(visible.contains(Terrain.chunkKey(1, -3, 0)));
+        Assert.assertFalse(visible.contains(Terrain.chunkKey(2, 0, 0)));
+        Assert.assertEquals(5 * 7, visible.size());
+    }
+
+    @Test
+    public void testFilterStopsTheWalk() {
+        final OcclusionCuller culler = new OcclusionCuller(2);
+        final Set<Long> visible = new HashSet<>();
+
+        for (int i = 0; i < 2; ++i) {
+            visible.clear();
+            culler.cull(-8.0f, 8.0f, 70.0f,
+                    (chunkX, chunkY, section) -> OcclusionCuller.ALL,
+                    (minX, minY, minZ, maxX, maxY, maxZ) -> minX < 0.0f,
+                    (chunkX, chunkY) -> Assert.assertTrue(visible.add(Terrain.chunkKey(chunkX, chunkY, 0))));
+
+            Assert.assertEquals(3 * 5, visible.size());
+            Assert.assertFalse(visible.contains(Terrain.chunkKey(0, 0, 0)));
+        }
+    }
+}
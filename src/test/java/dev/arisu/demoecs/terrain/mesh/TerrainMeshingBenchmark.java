@@ -0,0 +1,90 @@
+package dev.arisu.demoecs.terrain.mesh;
+
+import dev.arisu.demoecs.terrain.Terrain;
+import dev.arisu.demoecs.terrain.TerrainSnapshot;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CPU side of getting a chunk column of the generated terrain on screen, as
+ * {@link ChunkMeshPipeline} does it for {@code TerrainRenderSystem}: snapshot of the column
+ * with its border, then meshing, without the upload. Per column, over the columns around
+ * the origin of a seeded terrain. Coarser levels of detail are always meshed greedily, as the
+ * pipeline meshes them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TerrainMeshingBenchmark {
+    private static final int RADIUS = 2;
+    private static final int COLUMNS = (2 * RADIUS) * (2 * RADIUS);
+
+    @Param({"NAIVE", "GREEDY"})
+    public MeshingMode mode;
+
+    @Param({"0", "3"})
+    public int lod;
+
+    private Terrain terrain;
+    private MeshBufferPool pool;
+    private ChunkMesher mesher;
+
+    @Setup
+    public void setup() {
+        terrain = new Terrain(42L);
+        pool = new MeshBufferPool();
+        mesher = new ChunkMesher(lod == 0 ? mode : MeshingMode.GREEDY, pool);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COLUMNS)
+    public int snapshotAndMesh() {
+        int quads = 0;
+        for (int chunkY = -RADIUS; chunkY < RADIUS; ++chunkY) {
+            for (int chunkX = -RADIUS; chunkX < RADIUS; ++chunkX) {
+                final TerrainSnapshot snapshot = snapshot(chunkX, chunkY);
+                final ChunkMesh mesh = mesher.mesh(lod == 0 ? snapshot : new LodView(snapshot, 1 << lod), chunkX, chunkY);
+                quads += mesh.getQuads();
+                pool.release(mesh.getVertices());
+            }
+        }
+        return quads;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COLUMNS)
+    public int snapshot() {
+        int blocks = 0;
+        for (int chunkY = -RADIUS; chunkY < RADIUS; ++chunkY) {
+            for (int chunkX = -RADIUS; chunkX < RADIUS; ++chunkX) {
+                blocks += snapshot(chunkX, chunkY).getBlock(chunkX * ChunkMesher.SIZE, chunkY * ChunkMesher.SIZE, 0);
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Same region as {@link ChunkMeshPipeline#submit(int, int)} takes.
+     */
+    private TerrainSnapshot snapshot(int chunkX, int chunkY) {
+        final int minX = chunkX * ChunkMesher.SIZE;
+        final int minY = chunkY * ChunkMesher.SIZE;
+        return terrain.snapshot(
+                minX - 1, minY - 1, -1,
+                minX + ChunkMesher.SIZE, minY + ChunkMesher.SIZE, ChunkMesher.HEIGHT);
+    }
+}
@@ -0,0 +1,138 @@
+package dev.arisu.demoecs.terrain.region;
+
+import dev.arisu.demoecs.terrain.Chunk;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RegionStorageTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Chunk noise(int blocks) {
+        final Chunk chunk = Chunk.uniform((byte) 0).toMutable();
+        for (int i = 0; i < Chunk.VOLUME; ++i) {
+            chunk.setBlock(i & Chunk.MASK, (i >> 4) & Chunk.MASK, i >> 8, (byte) ((i * 31 + i / 7) % blocks));
+        }
+        return chunk;
+    }
+
+    private static void assertSameBlocks(Chunk expected, Chunk actual) {
+        for (int z = 0; z < Chunk.SIZE; ++z) {
+            for (int y = 0; y < Chunk.SIZE; ++y) {
+                for (int x = 0; x < Chunk.SIZE; ++x) {
+                    Assert.assertEquals(expected.getBlock(x, y, z), actual.getBlock(x, y, z));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testChunksSurviveReopening() throws Exception {
+        final Path directory = folder.getRoot().toPath();
+        final Chunk small = noise(2);
+        final Chunk large = noise(200);
+
+        final RegionStorage storage = new RegionStorage(directory);
+        storage.save(0, 0, 0, small);
+        storage.save(-1, 7, 8, large);
+        storage.save(3, 3, 3, Chunk.uniform((byte) 5));
+        storage.save(4, 4, 4, small);
+        storage.delete(4, 4, 4);
+        assertSameBlocks(large, storage.load(-1, 7, 8));
+        storage.close();
+
+        final RegionStorage reopened = new RegionStorage(directory);
+        final int[] count = new int[1];
+        reopened.forEachChunk((cx, cy, cz) -> count[0]++);
+        Assert.assertEquals(3, count[0]);
+
+        assertSameBlocks(small, reopened.load(0, 0, 0));
+        assertSameBlocks(large, reopened.load(-1, 7, 8));
+        Assert.assertSame(Chunk.uniform((byte) 5), reopened.load(3, 3, 3));
+        Assert.assertNull(reopened.load(4, 4, 4));
+        Assert.assertNull(reopened.load(100, 0, 0));
+        reopened.close();
+    }
+
+    @Test
+    public void testRewrittenChunksReuseSectors() throws Exception {
+        final Path path = folder.getRoot().toPath().resolve("region");
+        final RegionFile region = new RegionFile(path);
+        final int header = region.getUsedSectors();
+
+        region.write(0, new byte[RegionFile.SECTOR_BYTES]);
+        region.write(1, new byte[RegionFile.SECTOR_BYTES]);
+        Assert.assertEquals(header + 2, region.getUsedSectors());
+
+        // grows past its sector, moves after the second chunk
+        region.write(0, new byte[2 * RegionFile.SECTOR_BYTES]);
+        Assert.assertEquals(header + 3, region.getUsedSectors());
+
+        // fits the sector freed by the first one
+        final byte[] payload = {1, 2, 3};
+        region.write(2, payload);
+        Assert.assertEquals(header + 4, region.getUsedSectors());
+        Assert.assertArrayEquals(payload, region.read(2));
+
+        region.write(1, new byte[0]);
+        Assert.assertFalse(region.contains(1));
+        region.close();
+
+        // free sectors past the last chunk are trimmed when reopened
+        final RegionFile reopened = new RegionFile(path);
+        Assert.assertEquals((long) (header + 4) * RegionFile.SECTOR_BYTES, Files.size(path));
+        Assert.assertArrayEquals(payload, reopened.read(2));
+        Assert.assertEquals(2 * RegionFile.SECTOR_BYTES, reopened.read(0).length);
+        Assert.assertNull(reopened.read(1));
+        reopened.close();
+    }
+
+    @Test
+    public void testGrownChunkDoesNotOverwriteItsOldCopy() throws Exception {
+        final Path path = folder.getRoot().toPath().resolve("region");
+        final RegionFile region = new RegionFile(path);
+        final int header = region.getUsedSectors();
+
+        final byte[] small = new byte[RegionFile.SECTOR_BYTES];
+        Arrays.fill(small, (byte) 1);
+        final byte[] large = new byte[3 * RegionFile.SECTOR_BYTES];
+        Arrays.fill(large, (byte) 2);
+
+        region.write(0, small);
+        region.write(0, large);
+        region.flush();
+        Assert.assertArrayEquals(large, region.read(0));
+
+        // a grown chunk moves past its old sectors instead of over them
+        final byte[] file = Files.readAllBytes(path);
+        Assert.assertArrayEquals(small, Arrays.copyOfRange(file,
+                header * RegionFile.SECTOR_BYTES, (header + 1) * RegionFile.SECTOR_BYTES));
+        Assert.assertEquals(header + 3, region.getUsedSectors());
+        region.close();
+    }
+
+    @Test
+    public void testChunkThatFailedToWriteStaysLoadable() throws Exception {
+        final Path directory = folder.getRoot().toPath();
+        // a directory where the region file should be can't be opened
+        Files.createDirectory(directory.resolve("r.0.0.0.region"));
+        final Chunk chunk = noise(3);
+
+        final RegionStorage storage = new RegionStorage(directory);
+        storage.save(1, 2, 3, chunk);
+        try {
+            storage.flush();
+            Assert.fail("flush didn't report the failed write");
+        } catch (IOException expected) {
+        }
+        assertSameBlocks(chunk, storage.load(1, 2, 3));
+        storage.close();
+    }
+}
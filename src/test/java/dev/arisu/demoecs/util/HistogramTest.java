@@ -0,0 +1,55 @@
+package dev.arisu.demoecs.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HistogramTest {
+
+    @Test
+    public void bucketsCoverEveryValueInOrder() {
+        for (long value : new long[]{0, 1, 63, 64, 65, 127, 128, 1000, 123_456_789L, Long.MAX_VALUE}) {
+            final int index = Histogram.index(value);
+            Assert.assertTrue(Histogram.lowestValue(index) <= value);
+            Assert.assertTrue(Histogram.highestValue(index) >= value);
+        }
+        for (int index = 1; index < Histogram.index(Long.MAX_VALUE); ++index) {
+            Assert.assertEquals(Histogram.highestValue(index - 1) + 1, Histogram.lowestValue(index));
+        }
+    }
+
+    @Test
+    public void percentilesWithinBucketPrecision() {
+        final Histogram histogram = new Histogram();
+        for (long value = 1; value <= 100_000; ++value) {
+            histogram.record(value * 1000);
+        }
+
+        Assert.assertEquals(100_000, histogram.getCount());
+        Assert.assertEquals(1000, histogram.getMin());
+        Assert.assertEquals(100_000_000, histogram.getMax());
+        Assert.assertEquals(50_000_500.0, histogram.getMean(), 1.0);
+        Assert.assertEquals(50_000_000, histogram.getValueAtPercentile(50), 50_000_000 / 32.0);
+        Assert.assertEquals(99_000_000, histogram.getValueAtPercentile(99), 99_000_000 / 32.0);
+        Assert.assertEquals(100_000_000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void resetsAndMerges() {
+        final Histogram a = new Histogram();
+        final Histogram b = new Histogram();
+        a.record(10);
+        b.record(20);
+        b.record(30);
+
+        a.add(b);
+        Assert.assertEquals(3, a.getCount());
+        Assert.assertEquals(10, a.getMin());
+        Assert.assertEquals(30, a.getMax());
+        Assert.assertEquals(20, a.getValueAtPercentile(50));
+
+        a.reset();
+        Assert.assertEquals(0, a.getCount());
+        Assert.assertEquals(0, a.getMin());
+        Assert.assertEquals(0, a.getValueAtPercentile(50));
+    }
+}